@@ -1,4 +0,0 @@
-@FunctionalInterface
-public interface TradeListener {
-    void onTrade(Trade trade);
-}
\ No newline at end of file
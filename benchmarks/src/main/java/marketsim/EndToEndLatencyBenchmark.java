@@ -0,0 +1,69 @@
+package marketsim;
+
+import org.HdrHistogram.Histogram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// submitOrder -> trade listener round trip through the ring buffer, the matching thread and the
+// listener dispatcher. Each invocation submits a resting order and a crossing one, then waits for
+// the trade. Percentiles are recorded in an HdrHistogram on the listener thread.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndLatencyBenchmark {
+    @Param("42")
+    public long seed;
+    
+    @Param({"PARKING", "YIELDING"})
+    public WaitStrategy waitStrategy;
+    
+    private MatchingEngine engine;
+    private Histogram histogram; // Listener thread only until the engine stops
+    private Random random;
+    private volatile long submittedAt;
+    private volatile long received;
+    private long expected;
+    
+    @Setup(Level.Trial)
+    public void startEngine() {
+        histogram = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+        random = new Random(seed);
+        engine = new MatchingEngine(1, () -> new RingBufferIngress(1 << 16, waitStrategy));
+        engine.addTradeListener((trades, count) -> {
+            histogram.recordValue(System.nanoTime() - submittedAt);
+            received += count;
+        }, 1 << 14, BackpressurePolicy.BLOCK);
+        engine.start();
+    }
+    
+    @Benchmark
+    public long submitToTrade() {
+        long price = Workload.MID + random.nextInt(10);
+        int quantity = 1 + random.nextInt(100);
+        submittedAt = System.nanoTime();
+        engine.submitOrder("SELLER", "BENCH", Order.Side.SELL, price, quantity);
+        engine.submitOrder("BUYER", "BENCH", Order.Side.BUY, price, quantity);
+        expected++;
+        while (received < expected) {
+            Thread.onSpinWait();
+        }
+        return received;
+    }
+    
+    @TearDown(Level.Trial)
+    public void stopEngine() {
+        engine.stop();
+        System.out.printf("%nsubmitOrder -> listener latency (us): p50=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f (n=%d)%n",
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getValueAtPercentile(99.99) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,163 @@
+package marketsim;
+
+import org.HdrHistogram.Histogram;
+
+import java.net.InetSocketAddress;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Throughput and latency client for OrderGateway. Each connection pipelines up to `window`
+// unacknowledged orders on a sending thread, flushing every `batch` orders, while a receiving
+// thread times each NEW -> ACK round trip. Buys and sells straddle one price so every order
+// crosses and the books stay shallow. Without host/port an engine and gateway are started
+// in-process on loopback.
+//
+// Args: connections ordersPerConnection window batch seed [host port]
+public class GatewayLoadClient {
+    private static final String SYMBOL = "BENCH";
+    
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int orders = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int window = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        int batch = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        
+        MatchingEngine engine = null;
+        OrderGateway gateway = null;
+        InetSocketAddress address;
+        if (args.length > 6) {
+            address = new InetSocketAddress(args[5], Integer.parseInt(args[6]));
+        } else {
+            engine = new MatchingEngine();
+            engine.registerSymbol(SYMBOL);
+            engine.start();
+            gateway = new OrderGateway(engine, new InetSocketAddress("127.0.0.1", 0));
+            gateway.start();
+            address = new InetSocketAddress("127.0.0.1", gateway.getPort());
+        }
+        
+        Histogram histogram = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+        Connection[] clients = new Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = new Connection(address, "LOAD" + i, orders, window, batch, seed + i);
+        }
+        long start = System.nanoTime();
+        for (Connection client : clients) {
+            client.start();
+        }
+        long acked = 0;
+        long fills = 0;
+        for (Connection client : clients) {
+            client.join();
+            histogram.add(client.histogram);
+            acked += client.acked.get();
+            fills += client.fills;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        
+        System.out.printf("%d connections, %d orders acked in %.2f s: %.0f orders/s, %d fills%n",
+                connections, acked, seconds, acked / seconds, fills);
+        System.out.printf("NEW -> ACK latency (us): p50=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f%n",
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getValueAtPercentile(99.99) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+        
+        if (gateway != null) {
+            gateway.close();
+            engine.stop();
+        }
+    }
+    
+    private static final class Connection implements GatewayClient.Listener {
+        private final GatewayClient client;
+        private final int orders;
+        private final int window;
+        private final int batch;
+        private final SplittableRandom random;
+        private final long[] sentAt; // Indexed by clientOrderId
+        private final Histogram histogram; // Receiving thread only
+        private final AtomicLong acked;
+        private long fills; // Receiving thread only
+        private Thread sender;
+        private Thread receiver;
+        
+        Connection(InetSocketAddress address, String traderId, int orders, int window, int batch,
+                   long seed) throws Exception {
+            this.client = new GatewayClient(address, traderId);
+            this.orders = orders;
+            this.window = window;
+            this.batch = batch;
+            this.random = new SplittableRandom(seed);
+            this.sentAt = new long[orders];
+            this.histogram = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+            this.acked = new AtomicLong();
+        }
+        
+        void start() {
+            sender = new Thread(this::send, "GatewayLoad-Send");
+            receiver = new Thread(this::receive, "GatewayLoad-Receive");
+            receiver.start();
+            sender.start();
+        }
+        
+        void join() throws Exception {
+            sender.join();
+            receiver.join();
+            client.close();
+        }
+        
+        private void send() {
+            long symbol = GatewayProtocol.packSymbol(SYMBOL);
+            try {
+                for (int i = 0; i < orders; i++) {
+                    while (i - acked.get() >= window) {
+                        client.flush();
+                        LockSupport.parkNanos(1_000);
+                    }
+                    Order.Side side = (i & 1) == 0 ? Order.Side.BUY : Order.Side.SELL;
+                    long offset = random.nextInt(5);
+                    long price = side == Order.Side.BUY ? Workload.MID + offset : Workload.MID - offset;
+                    sentAt[i] = System.nanoTime();
+                    client.sendNew(i, symbol, side, Order.Type.LIMIT, price, 1 + random.nextInt(100));
+                    if ((i + 1) % batch == 0) {
+                        client.flush();
+                    }
+                }
+                client.flush();
+            } catch (Exception e) {
+                throw new IllegalStateException("Send failed", e);
+            }
+        }
+        
+        private void receive() {
+            try {
+                while (acked.get() < orders) {
+                    if (client.poll(this) < 0) break;
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Receive failed", e);
+            }
+        }
+        
+        @Override
+        public void onAck(long clientOrderId, long orderId) {
+            histogram.recordValue(System.nanoTime() - sentAt[(int) clientOrderId]);
+            acked.lazySet(acked.get() + 1);
+        }
+        
+        @Override
+        public void onFill(long orderId, long tradeId, long price, int quantity) {
+            fills++;
+        }
+        
+        @Override
+        public void onReject(long clientOrderId, int reason) {
+            throw new IllegalStateException("Order " + clientOrderId + " rejected: " + reason);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package marketsim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Single-threaded add/match/cancel throughput of one book, as driven by its matching shard
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookBenchmark {
+    private static final int WORKLOAD_SIZE = 1 << 20;
+    
+    @Param({"100", "10000", "100000"})
+    public int depth; // Resting orders per side before the run
+    
+    @Param({"0.0", "0.5", "0.9"})
+    public double cancelRatio;
+    
+    @Param({"false", "true"})
+    public boolean offHeap; // Resting orders in direct memory instead of a heap array
+    
+    @Param("42")
+    public long seed;
+    
+    private Workload workload;
+    private OrderBook book;
+    private TradeBuffer trades;
+    private long[] liveIds; // Recently added orders that cancels pick from
+    private int cursor;
+    private long nextId;
+    
+    @Setup(Level.Trial)
+    public void generate() {
+        workload = Workload.generate(seed, WORKLOAD_SIZE, cancelRatio);
+    }
+    
+    @Setup(Level.Iteration)
+    public void fillBook() {
+        book = new OrderBook(new Instrument("BENCH", 0.01), null, OrderBook.DEFAULT_SNAPSHOT_DEPTH, offHeap);
+        trades = new TradeBuffer();
+        liveIds = new long[Math.max(1024, depth)];
+        cursor = 0;
+        nextId = 1;
+        for (int i = 0; i < depth; i++) {
+            add(Order.Side.BUY, Workload.MID - 1 - (i % 50), 100);
+            add(Order.Side.SELL, Workload.MID + 1 + (i % 50), 100);
+        }
+    }
+    
+    private long add(Order.Side side, long price, int quantity) {
+        long orderId = nextId++;
+        Order order = book.acquireOrder();
+        order.init(orderId, "BENCH", "BENCH", side, price, quantity, orderId);
+        book.submit(order, trades);
+        liveIds[(int) (orderId % liveIds.length)] = orderId;
+        return orderId;
+    }
+    
+    @Benchmark
+    public int step() {
+        int i = cursor;
+        cursor = (cursor + 1) & (WORKLOAD_SIZE - 1);
+        
+        if (workload.ops[i] == Workload.CANCEL) {
+            return book.cancelOrder(liveIds[workload.cancelSlots[i] % liveIds.length]) ? 1 : 0;
+        }
+        add(workload.buys[i] ? Order.Side.BUY : Order.Side.SELL, workload.prices[i], workload.quantities[i]);
+        int count = trades.size();
+        trades.clear();
+        return count;
+    }
+}
@@ -0,0 +1,50 @@
+package marketsim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of reading a book's published view, and of rebuilding it after a change
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int depth; // Resting orders per side
+    
+    private OrderBook book;
+    private long nextId;
+    
+    @Setup(Level.Trial)
+    public void fillBook() {
+        book = new OrderBook(new Instrument("BENCH", 0.01));
+        for (int i = 0; i < depth; i++) {
+            add(Order.Side.BUY, Workload.MID - 1 - (i % 50));
+            add(Order.Side.SELL, Workload.MID + 1 + (i % 50));
+        }
+        book.publishView();
+    }
+    
+    private long add(Order.Side side, long price) {
+        long orderId = ++nextId;
+        Order order = book.acquireOrder();
+        order.init(orderId, "BENCH", "BENCH", side, price, 100, orderId);
+        book.addOrder(order);
+        return orderId;
+    }
+    
+    @Benchmark
+    public OrderBookSnapshot cachedSnapshot() {
+        return book.getSnapshot();
+    }
+    
+    @Benchmark
+    public OrderBookSnapshot rebuildSnapshot() {
+        book.cancelOrder(add(Order.Side.BUY, Workload.MID - 1));
+        book.publishView();
+        return book.getSnapshot();
+    }
+}
@@ -0,0 +1,54 @@
+package marketsim;
+
+import java.util.Random;
+
+// Order flow generated up front from a fixed seed, so every run on every commit replays
+// exactly the same operations and the generator's cost stays out of the measurement
+public class Workload {
+    public static final byte PASSIVE = 0;    // Rests behind the top of book
+    public static final byte AGGRESSIVE = 1; // Crosses the spread
+    public static final byte CANCEL = 2;     // Cancels a previously added order
+    
+    public static final long MID = 10_000; // In ticks
+    
+    final byte[] ops;
+    final boolean[] buys;
+    final long[] prices;
+    final int[] quantities;
+    final int[] cancelSlots;
+    
+    private Workload(int size) {
+        this.ops = new byte[size];
+        this.buys = new boolean[size];
+        this.prices = new long[size];
+        this.quantities = new int[size];
+        this.cancelSlots = new int[size];
+    }
+    
+    // cancelRatio of the operations are cancels; a fifth of the rest cross the spread
+    public static Workload generate(long seed, int size, double cancelRatio) {
+        Random random = new Random(seed);
+        Workload workload = new Workload(size);
+        for (int i = 0; i < size; i++) {
+            boolean buy = random.nextBoolean();
+            workload.buys[i] = buy;
+            workload.quantities[i] = 1 + random.nextInt(100);
+            workload.cancelSlots[i] = random.nextInt(Integer.MAX_VALUE);
+            if (random.nextDouble() < cancelRatio) {
+                workload.ops[i] = CANCEL;
+            } else if (random.nextInt(5) == 0) {
+                workload.ops[i] = AGGRESSIVE;
+                workload.prices[i] = buy ? MID + 5 : MID - 5;
+            } else {
+                workload.ops[i] = PASSIVE;
+                int offset = 1 + random.nextInt(20);
+                workload.prices[i] = buy ? MID - offset : MID + offset;
+            }
+        }
+        return workload;
+    }
+    
+    public int size() {
+        return ops.length;
+    }
+}
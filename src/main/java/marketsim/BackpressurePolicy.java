@@ -0,0 +1,8 @@
+package marketsim;
+
+// What a matching thread does when a listener's trade buffer is full
+public enum BackpressurePolicy {
+    BLOCK,    // Wait for the listener to catch up; a slow listener slows matching
+    DROP,     // Discard the new trade and count it
+    CONFLATE  // Overwrite the oldest undelivered trades; the listener skips to the newest ones
+}
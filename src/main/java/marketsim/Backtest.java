@@ -0,0 +1,257 @@
+package marketsim;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Deterministic backtests over a recorded OrderStream. Replays run on virtual time through
+// MatchingEngine.replay(), as fast as the books match, and fan out over a fork-join pool either by
+// symbol partition of one engine or as whole-stream runs of independently configured engines.
+//
+// Usage: Backtest generate <file> [orders] [symbols] [seed]
+//        Backtest convert <journalDir> <shards> <file>
+//        Backtest run <file> [partitions]
+//        Backtest verify <file>
+public class Backtest {
+    // Summary of the trades of a replay. The checksum covers every trade's order ids, price,
+    // quantity and virtual timestamp, in execution order within each symbol; trade ids are left
+    // out, so the checksum does not depend on how symbols were partitioned.
+    public static final class Result implements TradeListener {
+        private final Map<String, long[]> symbolChecksums; // One rolling hash per symbol
+        private long commands;
+        private long trades;
+        private long volume;
+        private long notional; // Sum of price ticks * quantity
+        private long elapsedNanos;
+        
+        public Result() {
+            this.symbolChecksums = new HashMap<>();
+        }
+        
+        @Override
+        public void onTrade(Trade trade) {
+            long[] checksum = symbolChecksums.get(trade.getSymbol());
+            if (checksum == null) {
+                checksum = new long[1];
+                symbolChecksums.put(trade.getSymbol(), checksum);
+            }
+            long hash = checksum[0];
+            hash = mix(hash + trade.getBuyOrderId());
+            hash = mix(hash + trade.getSellOrderId());
+            hash = mix(hash + trade.getPrice());
+            hash = mix(hash + trade.getQuantity());
+            hash = mix(hash + trade.getTimestamp());
+            checksum[0] = hash;
+            trades++;
+            volume += trade.getQuantity();
+            notional += trade.getPrice() * trade.getQuantity();
+        }
+        
+        private static long mix(long value) {
+            value *= 0x9E3779B97F4A7C15L;
+            return value ^ (value >>> 32);
+        }
+        
+        void merge(Result other) {
+            symbolChecksums.putAll(other.symbolChecksums);
+            commands += other.commands;
+            trades += other.trades;
+            volume += other.volume;
+            notional += other.notional;
+        }
+        
+        // Order-independent across symbols
+        public long getChecksum() {
+            long checksum = 0;
+            for (Map.Entry<String, long[]> entry : symbolChecksums.entrySet()) {
+                checksum += mix(entry.getKey().hashCode() + entry.getValue()[0]);
+            }
+            return checksum;
+        }
+        
+        public long getCommands() { return commands; }
+        public long getTrades() { return trades; }
+        public long getVolume() { return volume; }
+        public long getNotional() { return notional; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format("%,d commands, %,d trades, volume %,d, checksum %016x in %.2f s (%,.0f commands/s)",
+                    commands, trades, volume, getChecksum(), seconds, commands / seconds);
+        }
+    }
+    
+    // Replays the stream into one engine with its symbols split round-robin into `partitions`
+    // groups, each group replayed by its own fork-join task
+    public static Result run(OrderStream stream, MatchingEngine engine, int partitions, ForkJoinPool pool) {
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            int partition = i;
+            tasks.add(() -> {
+                Result result = new Result();
+                result.commands = engine.replay(stream, symbol -> symbol % partitions == partition, result);
+                return result;
+            });
+        }
+        long start = System.nanoTime();
+        Result total = new Result();
+        for (Result result : invokeAll(pool, tasks)) {
+            total.merge(result);
+        }
+        total.elapsedNanos = System.nanoTime() - start;
+        return total;
+    }
+    
+    // Replays the whole stream once into each engine, all in parallel: one run per parameter set
+    // (tick sizes, storage, ...), each configured on its engine beforehand
+    public static List<Result> runEach(OrderStream stream, List<MatchingEngine> engines, ForkJoinPool pool) {
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (MatchingEngine engine : engines) {
+            tasks.add(() -> {
+                long start = System.nanoTime();
+                Result result = new Result();
+                result.commands = engine.replay(stream, symbol -> true, result);
+                result.elapsedNanos = System.nanoTime() - start;
+                return result;
+            });
+        }
+        return invokeAll(pool, tasks);
+    }
+    
+    private static List<Result> invokeAll(ForkJoinPool pool, List<Callable<Result>> tasks) {
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Future<Result> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Backtest interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Backtest failed", e.getCause());
+        }
+        return results;
+    }
+    
+    // Synthetic seeded session: Poisson arrivals at about 200k orders/s across the symbols, made of
+    // passive limits around a drifting mid, aggressive IOCs through it, and cancels of recent orders
+    public static long generate(Path file, int orders, int symbols, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] symbolNames = new String[symbols];
+        long[] mids = new long[symbols];
+        long[][] recent = new long[symbols][64]; // Ring of recent passive order ids per symbol
+        int[] recentCount = new int[symbols];
+        for (int i = 0; i < symbols; i++) {
+            symbolNames[i] = "SYM" + i;
+            mids[i] = 10_000;
+        }
+        String[] traders = new String[1000];
+        for (int i = 0; i < traders.length; i++) {
+            traders[i] = String.format("T%04d", i);
+        }
+        
+        long timestamp = 0;
+        try (OrderStream.Writer writer = OrderStream.create(file)) {
+            for (long orderId = 1; orderId <= orders; orderId++) {
+                timestamp += (long) (-Math.log(1 - random.nextDouble()) * 5_000);
+                int s = random.nextInt(symbols);
+                if (random.nextInt(100) == 0) {
+                    mids[s] += random.nextBoolean() ? 1 : -1;
+                }
+                double kind = random.nextDouble();
+                String trader = traders[random.nextInt(traders.length)];
+                Order.Side side = random.nextBoolean() ? Order.Side.BUY : Order.Side.SELL;
+                int quantity = 1 + random.nextInt(100);
+                if (kind < 0.25 && recentCount[s] > 0) {
+                    int count = Math.min(recentCount[s], recent[s].length);
+                    writer.appendCancel(timestamp, recent[s][random.nextInt(count)], symbolNames[s]);
+                } else if (kind < 0.45) {
+                    long price = side == Order.Side.BUY ? mids[s] + 5 : mids[s] - 5;
+                    writer.appendNew(timestamp, orderId, symbolNames[s], trader, side, Order.Type.IOC, price, quantity);
+                } else {
+                    long offset = 1 + random.nextInt(20);
+                    long price = side == Order.Side.BUY ? mids[s] - offset : mids[s] + offset;
+                    writer.appendNew(timestamp, orderId, symbolNames[s], trader, side, Order.Type.LIMIT, price, quantity);
+                    recent[s][recentCount[s]++ % recent[s].length] = orderId;
+                }
+            }
+            return writer.getRecordCount();
+        }
+    }
+    
+    // Converts a recorded session's journal to an order stream, shard by shard
+    public static long convert(Path journalDirectory, int shards, Path file) throws IOException {
+        try (OrderStream.Writer writer = OrderStream.create(file)) {
+            for (int i = 0; i < shards; i++) {
+                Journal.replay(journalDirectory, i, writer);
+            }
+            return writer.getRecordCount();
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: Backtest generate <file> [orders] [symbols] [seed]");
+            System.err.println("       Backtest convert <journalDir> <shards> <file>");
+            System.err.println("       Backtest run <file> [partitions]");
+            System.err.println("       Backtest verify <file>");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[1]);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        switch (args[0]) {
+            case "generate": {
+                int orders = args.length > 2 ? Integer.parseInt(args[2]) : 10_000_000;
+                int symbols = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+                long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+                System.out.printf("Wrote %,d records to %s%n", generate(file, orders, symbols, seed), file);
+                break;
+            }
+            case "convert": {
+                Path out = Paths.get(args[3]);
+                System.out.printf("Wrote %,d records to %s%n", convert(file, Integer.parseInt(args[2]), out), out);
+                break;
+            }
+            case "run": {
+                int partitions = args.length > 2 ? Integer.parseInt(args[2]) : pool.getParallelism();
+                OrderStream stream = OrderStream.open(file);
+                MatchingEngine engine = new MatchingEngine();
+                System.out.println(run(stream, engine, partitions, pool));
+                System.out.println("Resting orders: " + engine.getOrderBookSizes());
+                engine.stop();
+                break;
+            }
+            case "verify": {
+                // The same stream through differently configured engines and partition counts must
+                // produce identical trades
+                OrderStream stream = OrderStream.open(file);
+                MatchingEngine heap = new MatchingEngine();
+                MatchingEngine offHeap = new MatchingEngine();
+                offHeap.setOffHeapOrderStorage(true);
+                List<Result> results = new ArrayList<>(runEach(stream, List.of(heap, offHeap), pool));
+                MatchingEngine partitioned = new MatchingEngine();
+                results.add(run(stream, partitioned, Math.max(2, pool.getParallelism()), pool));
+                for (Result result : results) {
+                    System.out.println(result);
+                }
+                boolean identical = results.stream().mapToLong(Result::getChecksum).distinct().count() == 1;
+                System.out.println(identical ? "Replays identical" : "Replays DIFFER");
+                heap.stop();
+                offHeap.stop();
+                partitioned.stop();
+                if (!identical) System.exit(1);
+                break;
+            }
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(2);
+        }
+    }
+}
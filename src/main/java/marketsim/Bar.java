@@ -0,0 +1,53 @@
+package marketsim;
+
+// Immutable OHLCV bar of one symbol over [startNanos, startNanos + intervalNanos), in epoch nanoseconds
+// unless its aggregator was given another offset. Prices are in ticks; notional is the sum of price
+// ticks * quantity, so the VWAP is exact up to the division.
+public class Bar {
+    private final String symbol;
+    private final long startNanos;
+    private final long intervalNanos;
+    private final long open;
+    private final long high;
+    private final long low;
+    private final long close;
+    private final long volume;
+    private final long notional;
+    private final int tradeCount;
+    
+    public Bar(String symbol, long startNanos, long intervalNanos, long open, long high, long low, long close,
+               long volume, long notional, int tradeCount) {
+        this.symbol = symbol;
+        this.startNanos = startNanos;
+        this.intervalNanos = intervalNanos;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.notional = notional;
+        this.tradeCount = tradeCount;
+    }
+    
+    public String getSymbol() { return symbol; }
+    public long getStartNanos() { return startNanos; }
+    public long getIntervalNanos() { return intervalNanos; }
+    public long getOpen() { return open; }
+    public long getHigh() { return high; }
+    public long getLow() { return low; }
+    public long getClose() { return close; }
+    public long getVolume() { return volume; }
+    public long getNotional() { return notional; }
+    public int getTradeCount() { return tradeCount; }
+    
+    // In ticks
+    public double getVwap() {
+        return volume > 0 ? (double) notional / volume : Double.NaN;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Bar{symbol='%s', O=%d, H=%d, L=%d, C=%d, V=%d, VWAP=%.2f, trades=%d}",
+                symbol, open, high, low, close, volume, getVwap(), tradeCount);
+    }
+}
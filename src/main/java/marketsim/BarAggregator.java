@@ -0,0 +1,236 @@
+package marketsim;
+
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streaming per-symbol OHLCV bars, running VWAP and trade counts over the trade stream. Register it
+// with addTradeListener(aggregator, capacity, policy) so it runs on its own dispatcher thread, or
+// pass it wherever a TradeListener is taken (e.g. MatchingEngine.replay()).
+//
+// One thread writes. Each symbol keeps its last `history` bars in primitive ring arrays, so a warm
+// trade allocates nothing; intervals without trades produce no bar. Readers never lock the writer:
+// each symbol is guarded by a sequence counter that is odd while a trade is being applied, and a
+// reader copies what it needs and retries if the counter moved.
+//
+// Trades are stamped with System.nanoTime(), whose origin is arbitrary. Bars are aligned on the
+// epoch instead: epochOffsetNanos is added to every trade timestamp, so bar starts are epoch
+// nanoseconds and, say, one-minute bars open on wall-clock minutes.
+public class BarAggregator implements TradeListener, TradeBatchListener {
+    private final long intervalNanos;
+    private final int history;
+    private final long epochOffsetNanos;
+    private final Map<String, SymbolBars> symbols;
+    
+    // For live trades: the offset maps this JVM's System.nanoTime() onto the epoch
+    public BarAggregator(long intervalNanos, int history) {
+        this(intervalNanos, history, nanoTimeToEpochOffset());
+    }
+    
+    // For trades from another clock, e.g. a recorded session replayed with its own timestamps;
+    // 0 aligns bars on the raw timestamps
+    public BarAggregator(long intervalNanos, int history, long epochOffsetNanos) {
+        if (intervalNanos <= 0 || history < 1) {
+            throw new IllegalArgumentException("Bar interval and history must be positive");
+        }
+        this.intervalNanos = intervalNanos;
+        this.history = history;
+        this.epochOffsetNanos = epochOffsetNanos;
+        this.symbols = new ConcurrentHashMap<>();
+    }
+    
+    // Epoch nanoseconds minus System.nanoTime(), to the wall clock's resolution
+    public static long nanoTimeToEpochOffset() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano() - System.nanoTime();
+    }
+    
+    @Override
+    public void onTrades(Trade[] trades, int count) {
+        for (int i = 0; i < count; i++) {
+            onTrade(trades[i]);
+        }
+    }
+    
+    @Override
+    public void onTrade(Trade trade) {
+        SymbolBars bars = symbols.get(trade.getSymbol());
+        if (bars == null) {
+            bars = new SymbolBars(trade.getSymbol(), history);
+            symbols.put(trade.getSymbol(), bars);
+        }
+        bars.apply(trade, intervalNanos, epochOffsetNanos);
+    }
+    
+    public Set<String> getSymbols() {
+        return Collections.unmodifiableSet(symbols.keySet());
+    }
+    
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+    
+    public long getEpochOffsetNanos() {
+        return epochOffsetNanos;
+    }
+    
+    // The bar currently being built, or null before the symbol's first trade
+    public Bar getLatestBar(String symbol) {
+        List<Bar> bars = getRecentBars(symbol, 1);
+        return bars.isEmpty() ? null : bars.get(0);
+    }
+    
+    // Up to count most recent bars, oldest first
+    public List<Bar> getRecentBars(String symbol, int count) {
+        SymbolBars bars = symbols.get(symbol);
+        return bars != null ? bars.recent(Math.min(count, history), intervalNanos) : List.of();
+    }
+    
+    // Since the first trade, in ticks; NaN before it
+    public double getVwap(String symbol) {
+        SymbolBars bars = symbols.get(symbol);
+        if (bars == null) return Double.NaN;
+        while (true) {
+            long version = bars.beginRead();
+            long volume = bars.totalVolume;
+            long notional = bars.totalNotional;
+            if (bars.validate(version)) {
+                return volume > 0 ? (double) notional / volume : Double.NaN;
+            }
+        }
+    }
+    
+    public long getVolume(String symbol) {
+        SymbolBars bars = symbols.get(symbol);
+        return bars != null ? bars.volume.get() : 0;
+    }
+    
+    public long getTradeCount(String symbol) {
+        SymbolBars bars = symbols.get(symbol);
+        return bars != null ? bars.trades.get() : 0;
+    }
+    
+    public long getTotalVolume() {
+        long total = 0;
+        for (SymbolBars bars : symbols.values()) {
+            total += bars.volume.get();
+        }
+        return total;
+    }
+    
+    public long getTotalTradeCount() {
+        long total = 0;
+        for (SymbolBars bars : symbols.values()) {
+            total += bars.trades.get();
+        }
+        return total;
+    }
+    
+    private static final class SymbolBars {
+        private final String symbol;
+        private final long[] starts;
+        private final long[] opens;
+        private final long[] highs;
+        private final long[] lows;
+        private final long[] closes;
+        private final long[] volumes;
+        private final long[] notionals;
+        private final int[] tradeCounts;
+        private final AtomicLong sequence; // Odd while the writer is mid-update
+        private final AtomicLong volume; // Running totals readable on their own
+        private final AtomicLong trades;
+        private long barCount; // Bars ever opened; the current one is at (barCount - 1) % history
+        private long totalVolume;
+        private long totalNotional;
+        
+        SymbolBars(String symbol, int history) {
+            this.symbol = symbol;
+            this.starts = new long[history];
+            this.opens = new long[history];
+            this.highs = new long[history];
+            this.lows = new long[history];
+            this.closes = new long[history];
+            this.volumes = new long[history];
+            this.notionals = new long[history];
+            this.tradeCounts = new int[history];
+            this.sequence = new AtomicLong();
+            this.volume = new AtomicLong();
+            this.trades = new AtomicLong();
+        }
+        
+        // Writer thread
+        void apply(Trade trade, long intervalNanos, long epochOffsetNanos) {
+            long price = trade.getPrice();
+            int quantity = trade.getQuantity();
+            long start = Math.floorDiv(trade.getTimestamp() + epochOffsetNanos, intervalNanos) * intervalNanos;
+            int history = starts.length;
+            
+            long version = sequence.get();
+            sequence.lazySet(version + 1);
+            VarHandle.storeStoreFence();
+            
+            int slot = (int) ((barCount - 1) % history);
+            // A trade stamped before the current bar (possible across shards) folds into it
+            if (barCount == 0 || start > starts[slot]) {
+                slot = (int) (barCount % history);
+                barCount++;
+                starts[slot] = start;
+                opens[slot] = price;
+                highs[slot] = price;
+                lows[slot] = price;
+                volumes[slot] = 0;
+                notionals[slot] = 0;
+                tradeCounts[slot] = 0;
+            }
+            highs[slot] = Math.max(highs[slot], price);
+            lows[slot] = Math.min(lows[slot], price);
+            closes[slot] = price;
+            volumes[slot] += quantity;
+            notionals[slot] += price * quantity;
+            tradeCounts[slot]++;
+            totalVolume += quantity;
+            totalNotional += price * quantity;
+            
+            sequence.lazySet(version + 2);
+            volume.lazySet(totalVolume);
+            trades.lazySet(trades.get() + 1);
+        }
+        
+        long beginRead() {
+            long version;
+            while (((version = sequence.get()) & 1) != 0) {
+                Thread.onSpinWait();
+            }
+            return version;
+        }
+        
+        boolean validate(long version) {
+            VarHandle.loadLoadFence();
+            return sequence.get() == version;
+        }
+        
+        List<Bar> recent(int count, long intervalNanos) {
+            int history = starts.length;
+            while (true) {
+                long version = beginRead();
+                long available = Math.min(barCount, history);
+                int n = (int) Math.min(count, available);
+                List<Bar> bars = new ArrayList<>(n);
+                for (long i = barCount - n; i < barCount; i++) {
+                    int slot = (int) (i % history);
+                    bars.add(new Bar(symbol, starts[slot], intervalNanos, opens[slot], highs[slot], lows[slot],
+                            closes[slot], volumes[slot], notionals[slot], tradeCounts[slot]));
+                }
+                if (validate(version)) {
+                    return bars;
+                }
+            }
+        }
+    }
+}
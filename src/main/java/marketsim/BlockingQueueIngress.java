@@ -0,0 +1,58 @@
+package marketsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Unbounded LinkedBlockingQueue ingress; allocates a command and a queue node per order
+public class BlockingQueueIngress implements OrderIngress {
+    private static final long POLL_MILLIS = 100;
+    
+    private final BlockingQueue<OrderCommand> queue;
+    private final List<OrderCommand> batch; // Consumer-thread only
+    
+    public BlockingQueueIngress() {
+        this.queue = new LinkedBlockingQueue<>();
+        this.batch = new ArrayList<>();
+    }
+    
+    @Override
+    public OrderCommand claim() {
+        return new OrderCommand();
+    }
+    
+    @Override
+    public void publish(OrderCommand command) {
+        try {
+            queue.put(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Failed to submit order", e);
+        }
+    }
+    
+    @Override
+    public int drain(Consumer<OrderCommand> handler, int maxBatch) throws InterruptedException {
+        OrderCommand first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) return 0;
+        
+        batch.add(first);
+        queue.drainTo(batch, maxBatch - 1);
+        try {
+            for (OrderCommand command : batch) {
+                handler.accept(command);
+            }
+            return batch.size();
+        } finally {
+            batch.clear();
+        }
+    }
+    
+    @Override
+    public int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,153 @@
+package marketsim;
+
+public class BookSide {
+    private static final int INITIAL_LEVELS = 1024;
+    private static final int MAX_LEVELS = 1 << 20;
+    
+    private final Order.Side side;
+    private final OrderStore store;
+    private PriceLevel[] levels; // Dense array indexed by (price - basePrice), in ticks
+    private long basePrice;
+    private int bestIndex;
+    private int levelCount; // Non-empty levels
+    
+    public BookSide(Order.Side side, OrderStore store) {
+        this.side = side;
+        this.store = store;
+        this.bestIndex = -1;
+    }
+    
+    // Whether add() could place an order at this price: the dense window spans at most MAX_LEVELS
+    // ticks, so a price too far from the prices already seen cannot rest on this side
+    public boolean accepts(long price) {
+        return levels == null || fits(basePrice, basePrice + levels.length - 1, price);
+    }
+    
+    static boolean fits(long windowLow, long windowHigh, long price) {
+        return Math.max(windowHigh, price) - Math.min(windowLow, price) < MAX_LEVELS;
+    }
+    
+    // Bounds of the current window; Long.MIN_VALUE and Long.MAX_VALUE before the first order
+    long getWindowLow() {
+        return levels == null ? Long.MIN_VALUE : basePrice;
+    }
+    
+    long getWindowHigh() {
+        return levels == null ? Long.MAX_VALUE : basePrice + levels.length - 1;
+    }
+    
+    // Appends the stored order to its level and returns the level; check accepts() first
+    public PriceLevel add(int slot) {
+        long price = store.price(slot);
+        int index = indexFor(price);
+        PriceLevel level = levels[index];
+        if (level == null) {
+            level = new PriceLevel(side, price, store);
+            levels[index] = level;
+        }
+        if (level.isEmpty()) {
+            levelCount++;
+            if (bestIndex < 0 || isBetter(index, bestIndex)) {
+                bestIndex = index;
+            }
+        }
+        level.append(slot);
+        return level;
+    }
+    
+    public void remove(PriceLevel level, int slot) {
+        level.remove(slot);
+        if (level.isEmpty()) {
+            levelCount--;
+            int index = (int) (level.getPrice() - basePrice);
+            if (index == bestIndex) {
+                bestIndex = levelCount == 0 ? -1 : nextNonEmpty(index);
+            }
+        }
+    }
+    
+    // Level of a stored order on this side
+    public PriceLevel levelOf(int slot) {
+        return levels[(int) (store.price(slot) - basePrice)];
+    }
+    
+    public PriceLevel getBestLevel() {
+        return bestIndex < 0 ? null : levels[bestIndex];
+    }
+    
+    // Next non-empty level behind the given one in priority order, or null
+    public PriceLevel worseThan(PriceLevel level) {
+        int index = nextNonEmpty((int) (level.getPrice() - basePrice));
+        return index < 0 ? null : levels[index];
+    }
+    
+    public boolean isEmpty() {
+        return levelCount == 0;
+    }
+    
+    public int getLevelCount() {
+        return levelCount;
+    }
+    
+    public Order.Side getSide() {
+        return side;
+    }
+    
+    private boolean isBetter(int index, int other) {
+        return side == Order.Side.BUY ? index > other : index < other;
+    }
+    
+    private int nextNonEmpty(int from) {
+        if (side == Order.Side.BUY) {
+            for (int i = from - 1; i >= 0; i--) {
+                if (levels[i] != null && !levels[i].isEmpty()) return i;
+            }
+        } else {
+            for (int i = from + 1; i < levels.length; i++) {
+                if (levels[i] != null && !levels[i].isEmpty()) return i;
+            }
+        }
+        return -1;
+    }
+    
+    private int indexFor(long price) {
+        if (levels == null) {
+            // Center the first window on the first price seen
+            levels = new PriceLevel[INITIAL_LEVELS];
+            basePrice = price - INITIAL_LEVELS / 2;
+        }
+        long offset = price - basePrice;
+        if (offset < 0 || offset >= levels.length) {
+            grow(price);
+            offset = price - basePrice;
+        }
+        return (int) offset;
+    }
+    
+    private void grow(long price) {
+        long low = Math.min(basePrice, price);
+        long high = Math.max(basePrice + levels.length - 1, price);
+        long span = high - low + 1;
+        if (span > MAX_LEVELS) {
+            throw new IllegalArgumentException("Price " + price + " is more than " + MAX_LEVELS
+                    + " ticks away from resting " + side + " orders");
+        }
+        
+        int length = levels.length * 2;
+        while (length < span) {
+            length *= 2;
+        }
+        length = Math.min(length, MAX_LEVELS);
+        
+        // Re-center so there is headroom on both sides of the occupied range
+        long newBase = low - (length - span) / 2;
+        int shift = (int) (basePrice - newBase);
+        PriceLevel[] newLevels = new PriceLevel[length];
+        System.arraycopy(levels, 0, newLevels, shift, levels.length);
+        levels = newLevels;
+        basePrice = newBase;
+        if (bestIndex >= 0) {
+            bestIndex += shift;
+        }
+    }
+}
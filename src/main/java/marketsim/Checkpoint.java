@@ -0,0 +1,183 @@
+package marketsim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+
+// Point-in-time image of the books of one matching shard, and of the risk positions in their
+// symbols. Serialised in memory on the shard's thread (a consistent cut between two commands), then
+// written to disk off that thread.
+//
+// Layout: int magic, int formatVersion, int shard, long journalSequence, long nextOrderId, int bookCount,
+// then per book: symbol, double tickSize, int orderCount, and the resting orders in priority
+// order (bids best first, then asks best first, FIFO within a level), each as
+// long orderId, byte side, long price, int originalQuantity, int remainingQuantity, traderId;
+// then int positionCount and each non-zero position as traderId, long position (version 2 on).
+// Strings are a short char count followed by the chars.
+public class Checkpoint {
+    private static final int MAGIC = 0x4F4D4543; // "OMEC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int MIN_FORMAT_VERSION = 1; // Version 1 has no positions
+    
+    public interface Loader {
+        void onBook(String symbol, double tickSize);
+        
+        void onOrder(String symbol, long orderId, String traderId, Order.Side side, long price,
+                     int originalQuantity, int remainingQuantity);
+        
+        void onPosition(String symbol, String traderId, long position);
+    }
+    
+    private final int shard;
+    private final long journalSequence;
+    private ByteBuffer buffer;
+    
+    private Checkpoint(int shard, long journalSequence, ByteBuffer buffer) {
+        this.shard = shard;
+        this.journalSequence = journalSequence;
+        this.buffer = buffer;
+    }
+    
+    // Owning shard's thread only: copies the books' resting orders, and the risk manager's positions
+    // in their symbols if there is one, into a buffer
+    public static Checkpoint capture(int shard, long journalSequence, List<OrderBook> books, RiskManager risk) {
+        Checkpoint checkpoint = new Checkpoint(shard, journalSequence, ByteBuffer.allocate(64 * 1024));
+        checkpoint.ensure(32);
+        checkpoint.buffer.putInt(MAGIC);
+        checkpoint.buffer.putInt(FORMAT_VERSION);
+        checkpoint.buffer.putInt(shard);
+        checkpoint.buffer.putLong(journalSequence);
+        checkpoint.buffer.putLong(Order.peekNextId());
+        checkpoint.buffer.putInt(books.size());
+        for (OrderBook book : books) {
+            checkpoint.putString(book.getSymbol());
+            checkpoint.ensure(12);
+            checkpoint.buffer.putDouble(book.getInstrument().getTickSize());
+            int countPosition = checkpoint.buffer.position();
+            checkpoint.buffer.putInt(0);
+            int[] count = new int[1];
+            book.forEachRestingOrder(order -> {
+                checkpoint.ensure(25);
+                checkpoint.buffer.putLong(order.getOrderId());
+                checkpoint.buffer.put((byte) order.getSide().ordinal());
+                checkpoint.buffer.putLong(order.getPrice());
+                checkpoint.buffer.putInt(order.getOriginalQuantity());
+                checkpoint.buffer.putInt(order.getRemainingQuantity());
+                checkpoint.putString(order.getTraderId());
+                count[0]++;
+            });
+            checkpoint.buffer.putInt(countPosition, count[0]);
+            
+            checkpoint.ensure(4);
+            countPosition = checkpoint.buffer.position();
+            checkpoint.buffer.putInt(0);
+            count[0] = 0;
+            if (risk != null) {
+                risk.forEachPosition(book.getSymbol(), (traderId, position) -> {
+                    checkpoint.putString(traderId);
+                    checkpoint.ensure(8);
+                    checkpoint.buffer.putLong(position);
+                    count[0]++;
+                });
+            }
+            checkpoint.buffer.putInt(countPosition, count[0]);
+        }
+        checkpoint.buffer.flip();
+        return checkpoint;
+    }
+    
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+    
+    private void putString(String value) {
+        ensure(2 + 2 * value.length());
+        buffer.putShort((short) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+    
+    // Writes to a temporary file and renames it over the previous checkpoint of the shard
+    public void writeTo(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = directory.resolve("checkpoint-shard-" + shard + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer data = buffer.duplicate();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path(directory, shard), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    public int getShard() { return shard; }
+    public long getJournalSequence() { return journalSequence; }
+    public int getSize() { return buffer.limit(); }
+    
+    public static Path path(Path directory, int shard) {
+        return directory.resolve("checkpoint-shard-" + shard + ".ckpt");
+    }
+    
+    // Maps the shard's checkpoint and feeds it to the loader. Returns the journal sequence it
+    // covers, or 0 if the shard has no checkpoint.
+    public static long load(Path directory, int shard, Loader loader) throws IOException {
+        Path path = path(directory, shard);
+        if (!Files.exists(path)) return 0;
+        
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int version = buffer.getInt() == MAGIC ? buffer.getInt() : -1;
+        if (version < MIN_FORMAT_VERSION || version > FORMAT_VERSION) {
+            throw new IOException("Not a version " + MIN_FORMAT_VERSION + "-" + FORMAT_VERSION + " checkpoint: " + path);
+        }
+        int storedShard = buffer.getInt();
+        if (storedShard != shard) {
+            throw new IOException("Checkpoint " + path + " belongs to shard " + storedShard);
+        }
+        long journalSequence = buffer.getLong();
+        Order.advanceIdsPast(buffer.getLong() - 1);
+        int bookCount = buffer.getInt();
+        for (int b = 0; b < bookCount; b++) {
+            String symbol = getString(buffer);
+            double tickSize = buffer.getDouble();
+            int orderCount = buffer.getInt();
+            loader.onBook(symbol, tickSize);
+            for (int i = 0; i < orderCount; i++) {
+                long orderId = buffer.getLong();
+                Order.Side side = Order.Side.values()[buffer.get()];
+                long price = buffer.getLong();
+                int originalQuantity = buffer.getInt();
+                int remainingQuantity = buffer.getInt();
+                String traderId = getString(buffer);
+                loader.onOrder(symbol, orderId, traderId, side, price, originalQuantity, remainingQuantity);
+            }
+            int positionCount = version >= 2 ? buffer.getInt() : 0;
+            for (int i = 0; i < positionCount; i++) {
+                String traderId = getString(buffer);
+                loader.onPosition(symbol, traderId, buffer.getLong());
+            }
+        }
+        return journalSequence;
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        char[] chars = new char[buffer.getShort()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+}
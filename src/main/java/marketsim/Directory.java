@@ -0,0 +1,61 @@
+package marketsim;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Dense int ids for names (symbols or trader ids), assigned in registration order from 0 and never
+// reused. A name is hashed once at the edge, when it is registered or resolved with idOf(); behind
+// that, per-name state lives in plain arrays indexed by the id, and nameOf() is an array read that
+// returns the one registered String instance. Safe from any thread; only registration locks.
+public class Directory {
+    private final Map<String, Integer> ids;
+    private volatile String[] names; // Replaced when it grows; slots below size are never rewritten
+    private volatile int size;
+    
+    public Directory() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[64];
+    }
+    
+    // Returns the name's id, assigning the next one if it has none yet
+    public int register(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : add(name);
+    }
+    
+    private synchronized int add(String name) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        // Slot and size first: whoever finds the id in the map can already resolve it with nameOf()
+        current[id] = name;
+        names = current;
+        size = id + 1;
+        ids.put(name, id);
+        return id;
+    }
+    
+    // -1 if the name was never registered
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+    
+    public String nameOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown id " + id);
+        }
+        return names[id];
+    }
+    
+    public int size() {
+        return size;
+    }
+}
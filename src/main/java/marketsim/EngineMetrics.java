@@ -0,0 +1,196 @@
+package marketsim;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Pull API over the engine's instrumentation, also exported through JMX by registerMBeans().
+// Values are recorded where they arise - a histogram per shard, single-writer counters per book and
+// dispatcher, a striped counter for the producer threads - so recording takes no lock and allocates
+// nothing. Everything is aggregated here, on read.
+public class EngineMetrics implements EngineMetricsMBean {
+    private final MatchingShard[] shards;
+    private final LatencyHistogram[] enqueueToMatch; // One per shard, recorded by its thread
+    private final LongAdder ordersSubmitted; // Any producer thread
+    private final Map<String, SymbolMetrics> symbols;
+    private final List<ObjectName> registered;
+    private final EventLog log;
+    private volatile String jmxName; // Set once the MBeans are registered
+    private volatile List<TradeDispatcher> dispatchers;
+    
+    EngineMetrics(MatchingShard[] shards, EventLog log) {
+        this.shards = shards;
+        this.log = log;
+        this.enqueueToMatch = new LatencyHistogram[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            enqueueToMatch[i] = new LatencyHistogram();
+        }
+        this.ordersSubmitted = new LongAdder();
+        this.symbols = new ConcurrentHashMap<>();
+        this.registered = new ArrayList<>();
+        this.dispatchers = List.of();
+    }
+    
+    void recordSubmitted() {
+        ordersSubmitted.increment();
+    }
+    
+    // Shard thread: time from the producer's submit to the start of matching
+    void recordEnqueueToMatch(int shard, long nanos) {
+        enqueueToMatch[shard].record(nanos);
+    }
+    
+    void setDispatchers(List<TradeDispatcher> dispatchers) {
+        this.dispatchers = dispatchers;
+    }
+    
+    // Market data thread, about once a second: refreshes rates and picks up new books
+    void sample(Collection<OrderBook> books) {
+        long now = System.nanoTime();
+        for (OrderBook book : books) {
+            SymbolMetrics metrics = symbols.get(book.getSymbol());
+            if (metrics == null) {
+                metrics = new SymbolMetrics(book);
+                symbols.put(book.getSymbol(), metrics);
+                if (jmxName != null) {
+                    register(metrics);
+                }
+            }
+            metrics.sample(now);
+        }
+    }
+    
+    // Exports this object and one MBean per book under marketsim:type=MatchingEngine,name=<name>
+    synchronized void registerMBeans(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("marketsim:type=MatchingEngine,name=" + ObjectName.quote(name));
+        server.registerMBean(this, objectName);
+        registered.add(objectName);
+        jmxName = name;
+        for (SymbolMetrics metrics : symbols.values()) {
+            register(metrics);
+        }
+    }
+    
+    private synchronized void register(SymbolMetrics metrics) {
+        try {
+            ObjectName objectName = new ObjectName("marketsim:type=OrderBook,engine=" + ObjectName.quote(jmxName)
+                    + ",symbol=" + ObjectName.quote(metrics.getSymbol()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+            registered.add(objectName);
+        } catch (JMException e) {
+            log.log(EventLog.Level.ERROR, "Error registering metrics for {}: {}", metrics.getSymbol(), e);
+        }
+    }
+    
+    synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.log(EventLog.Level.ERROR, "Error unregistering {}: {}", objectName, e);
+            }
+        }
+        registered.clear();
+        jmxName = null;
+    }
+    
+    // Per-symbol counters, depth and rates; books show up after their first sample
+    public Map<String, SymbolMetrics> getSymbols() {
+        return Map.copyOf(symbols);
+    }
+    
+    // Merged over all shards
+    public LatencyHistogram getEnqueueToMatch() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : enqueueToMatch) {
+            merged.add(histogram);
+        }
+        return merged;
+    }
+    
+    // Merged over all trade listeners
+    public LatencyHistogram getMatchToListener() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (TradeDispatcher dispatcher : dispatchers) {
+            merged.add(dispatcher.getDeliveryLatency());
+        }
+        return merged;
+    }
+    
+    @Override
+    public int getQueueDepth() {
+        int depth = 0;
+        for (MatchingShard shard : shards) {
+            depth += shard.getQueueDepth();
+        }
+        return depth;
+    }
+    
+    @Override
+    public int[] getQueueDepthPerShard() {
+        int[] depths = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            depths[i] = shards[i].getQueueDepth();
+        }
+        return depths;
+    }
+    
+    @Override
+    public long getOrdersSubmitted() {
+        return ordersSubmitted.sum();
+    }
+    
+    @Override
+    public long getProcessingErrors() {
+        long errors = 0;
+        for (MatchingShard shard : shards) {
+            errors += shard.getErrorCount();
+        }
+        return errors;
+    }
+    
+    @Override
+    public double getOrdersPerSecond() {
+        double rate = 0;
+        for (SymbolMetrics metrics : symbols.values()) {
+            rate += metrics.getOrdersPerSecond();
+        }
+        return rate;
+    }
+    
+    @Override
+    public double getTradesPerSecond() {
+        double rate = 0;
+        for (SymbolMetrics metrics : symbols.values()) {
+            rate += metrics.getTradesPerSecond();
+        }
+        return rate;
+    }
+    
+    @Override
+    public double getCancelsPerSecond() {
+        double rate = 0;
+        for (SymbolMetrics metrics : symbols.values()) {
+            rate += metrics.getCancelsPerSecond();
+        }
+        return rate;
+    }
+    
+    @Override public double getEnqueueToMatchP50Micros() { return getEnqueueToMatch().getValueAtPercentile(50) / 1000.0; }
+    @Override public double getEnqueueToMatchP99Micros() { return getEnqueueToMatch().getValueAtPercentile(99) / 1000.0; }
+    @Override public double getEnqueueToMatchP999Micros() { return getEnqueueToMatch().getValueAtPercentile(99.9) / 1000.0; }
+    @Override public double getEnqueueToMatchMaxMicros() { return getEnqueueToMatch().getMax() / 1000.0; }
+    @Override public double getMatchToListenerP50Micros() { return getMatchToListener().getValueAtPercentile(50) / 1000.0; }
+    @Override public double getMatchToListenerP99Micros() { return getMatchToListener().getValueAtPercentile(99) / 1000.0; }
+    @Override public double getMatchToListenerP999Micros() { return getMatchToListener().getValueAtPercentile(99.9) / 1000.0; }
+    @Override public double getMatchToListenerMaxMicros() { return getMatchToListener().getMax() / 1000.0; }
+}
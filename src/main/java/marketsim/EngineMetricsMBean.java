@@ -0,0 +1,34 @@
+package marketsim;
+
+// JMX view of EngineMetrics; latencies are in microseconds
+public interface EngineMetricsMBean {
+    int getQueueDepth();
+    
+    int[] getQueueDepthPerShard();
+    
+    long getOrdersSubmitted();
+    
+    long getProcessingErrors();
+    
+    double getOrdersPerSecond();
+    
+    double getTradesPerSecond();
+    
+    double getCancelsPerSecond();
+    
+    double getEnqueueToMatchP50Micros();
+    
+    double getEnqueueToMatchP99Micros();
+    
+    double getEnqueueToMatchP999Micros();
+    
+    double getEnqueueToMatchMaxMicros();
+    
+    double getMatchToListenerP50Micros();
+    
+    double getMatchToListenerP99Micros();
+    
+    double getMatchToListenerP999Micros();
+    
+    double getMatchToListenerMaxMicros();
+}
@@ -0,0 +1,168 @@
+package marketsim;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Engine-wide event log. Callers on any thread claim a preallocated event slot, fill in a template
+// and raw arguments, and publish it; one background thread formats and writes the text. Events
+// below the current level are rejected by claim() before anything is captured, and a full ring
+// drops the event instead of blocking the caller, so logging never stalls a matching thread.
+//
+// Hot paths use claim()/publish() with primitive arguments; the log() shorthands suit rare events.
+public class EventLog implements AutoCloseable {
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+    
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+    
+    private final LogEvent[] slots;
+    private final int mask;
+    private final AtomicLong claimed; // Next sequence to hand out
+    private final AtomicLongArray published; // Per slot: sequence + 1 once its event is complete
+    private final AtomicLong consumed; // Written by the writer thread only
+    private final AtomicLong dropped;
+    private final PrintStream out;
+    private final StringBuilder line; // Writer thread only
+    private final Thread writer;
+    private volatile Level level;
+    private volatile boolean running;
+    
+    // capacity must be a power of two
+    public EventLog(PrintStream out, Level level, int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Event log capacity must be a power of two: " + capacity);
+        }
+        this.slots = new LogEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new LogEvent();
+        }
+        this.mask = capacity - 1;
+        this.claimed = new AtomicLong();
+        this.published = new AtomicLongArray(capacity);
+        this.consumed = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.out = out;
+        this.line = new StringBuilder(256);
+        this.level = level;
+        this.running = true;
+        this.writer = new Thread(this::run, "EventLog-Writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0 && level != Level.OFF;
+    }
+    
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+    
+    public Level getLevel() {
+        return level;
+    }
+    
+    // Returns a slot to fill and publish(), or null when the level is suppressed or the ring is full.
+    // A non-null event must always be published.
+    public LogEvent claim(Level level, String template) {
+        if (!isEnabled(level) || !running) {
+            return null;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= slots.length) {
+                dropped.incrementAndGet();
+                return null;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        
+        LogEvent event = slots[(int) sequence & mask];
+        event.reset(sequence, level, template);
+        return event;
+    }
+    
+    public void publish(LogEvent event) {
+        published.set((int) event.sequence & mask, event.sequence + 1);
+    }
+    
+    public void log(Level level, String template) {
+        LogEvent event = claim(level, template);
+        if (event != null) {
+            publish(event);
+        }
+    }
+    
+    public void log(Level level, String template, Object arg) {
+        LogEvent event = claim(level, template);
+        if (event != null) {
+            publish(event.add(arg));
+        }
+    }
+    
+    public void log(Level level, String template, Object arg0, Object arg1) {
+        LogEvent event = claim(level, template);
+        if (event != null) {
+            publish(event.add(arg0).add(arg1));
+        }
+    }
+    
+    public void log(Level level, String template, Object arg0, Object arg1, Object arg2) {
+        LogEvent event = claim(level, template);
+        if (event != null) {
+            publish(event.add(arg0).add(arg1).add(arg2));
+        }
+    }
+    
+    private void run() {
+        int idle = 0;
+        while (running || consumed.get() < claimed.get()) {
+            if (drain() > 0) {
+                out.flush();
+                idle = 0;
+            } else if (!running) {
+                break; // An event was claimed but its publisher died
+            } else {
+                WaitStrategy.PARKING.idle(idle++);
+            }
+        }
+        out.flush();
+    }
+    
+    private int drain() {
+        long next = consumed.get();
+        int count = 0;
+        while (published.get((int) next & mask) == next + 1) {
+            LogEvent event = slots[(int) next & mask];
+            line.setLength(0);
+            TIME.formatTo(Instant.ofEpochMilli(event.timeMillis), line);
+            line.append(' ').append(event.level).append(" [").append(event.threadName).append("] ");
+            event.formatTo(line);
+            out.println(line);
+            next++;
+            count++;
+            consumed.lazySet(next);
+        }
+        return count;
+    }
+    
+    // Events lost because the ring was full
+    public long getDropped() {
+        return dropped.get();
+    }
+    
+    // Writes everything already published, then stops the writer thread
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
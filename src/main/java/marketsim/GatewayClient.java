@@ -0,0 +1,97 @@
+package marketsim;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+// Blocking client for OrderGateway. Sends are buffered until flush() (or a full buffer), so a
+// caller can pipeline a batch of orders into one write. One thread may send while another polls.
+public class GatewayClient implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    // Callbacks run on the polling thread
+    public interface Listener {
+        default void onAck(long clientOrderId, long orderId) {}
+        default void onCancelAck(long orderId, boolean cancelled) {}
+        default void onFill(long orderId, long tradeId, long price, int quantity) {}
+        default void onReject(long clientOrderId, int reason) {}
+    }
+    
+    private final SocketChannel channel;
+    private final ByteBuffer out; // Sending thread only
+    private final ByteBuffer in; // Polling thread only
+    
+    public GatewayClient(InetSocketAddress address, String traderId) throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        GatewayProtocol.putLogin(out, traderId);
+        flush();
+    }
+    
+    // symbol is GatewayProtocol.packSymbol(...), packed once by the caller
+    public void sendNew(long clientOrderId, long symbol, Order.Side side, Order.Type type, long price,
+                        int quantity) throws IOException {
+        if (out.remaining() < GatewayProtocol.NEW_LENGTH) flush();
+        GatewayProtocol.putNew(out, clientOrderId, symbol, side, type, price, quantity);
+    }
+    
+    public void sendCancel(long symbol, long orderId) throws IOException {
+        if (out.remaining() < GatewayProtocol.CANCEL_LENGTH) flush();
+        GatewayProtocol.putCancel(out, symbol, orderId);
+    }
+    
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+    
+    // Blocks for one read and dispatches every complete message in it; returns the number
+    // dispatched, or -1 once the gateway has closed the connection
+    public int poll(Listener listener) throws IOException {
+        if (channel.read(in) < 0) return -1;
+        in.flip();
+        int dispatched = 0;
+        while (in.hasRemaining()) {
+            int offset = in.position();
+            byte type = in.get(offset);
+            int length = GatewayProtocol.lengthOf(type);
+            if (length < 0) {
+                throw new IOException("Unknown message type from gateway: " + type);
+            }
+            if (in.remaining() < length) break;
+            switch (type) {
+                case GatewayProtocol.ACK:
+                    listener.onAck(in.getLong(offset + 1), in.getLong(offset + 9));
+                    break;
+                case GatewayProtocol.CANCEL_ACK:
+                    listener.onCancelAck(in.getLong(offset + 1), in.get(offset + 9) != 0);
+                    break;
+                case GatewayProtocol.FILL:
+                    listener.onFill(in.getLong(offset + 1), in.getLong(offset + 9), in.getLong(offset + 17),
+                            in.getInt(offset + 25));
+                    break;
+                case GatewayProtocol.REJECT:
+                    listener.onReject(in.getLong(offset + 1), in.get(offset + 9));
+                    break;
+                default:
+                    throw new IOException("Unexpected message type from gateway: " + type);
+            }
+            in.position(offset + length);
+            dispatched++;
+        }
+        in.compact();
+        return dispatched;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,160 @@
+package marketsim;
+
+import java.nio.ByteBuffer;
+
+// Binary order-entry protocol spoken by OrderGateway. Every message starts with a one-byte type
+// and has a fixed length for that type, so a reader frames messages without a length prefix and
+// decodes fields at fixed offsets straight out of its receive buffer. Integers are big-endian.
+// Symbols are up to 8 ASCII chars and trader ids up to 16, right-padded with spaces.
+//
+// Client to gateway:
+//   LOGIN:  type, traderId[16]
+//   NEW:    type, long clientOrderId, symbol[8], byte side, byte order type, long price, int quantity
+//   CANCEL: type, symbol[8], long orderId
+// Gateway to client:
+//   ACK:        type, long clientOrderId, long orderId
+//   CANCEL_ACK: type, long orderId, byte cancelled
+//   FILL:       type, long orderId, long tradeId, long price, int quantity
+//   REJECT:     type, long clientOrderId, byte reason (for a refused CANCEL, its orderId)
+public final class GatewayProtocol {
+    public static final byte LOGIN = 1;
+    public static final byte NEW = 2;
+    public static final byte CANCEL = 3;
+    public static final byte ACK = 4;
+    public static final byte CANCEL_ACK = 5;
+    public static final byte FILL = 6;
+    public static final byte REJECT = 7;
+    
+    public static final int SYMBOL_LENGTH = 8;
+    public static final int TRADER_ID_LENGTH = 16;
+    
+    public static final int LOGIN_LENGTH = 1 + TRADER_ID_LENGTH;
+    public static final int NEW_LENGTH = 1 + 8 + SYMBOL_LENGTH + 1 + 1 + 8 + 4;
+    public static final int CANCEL_LENGTH = 1 + SYMBOL_LENGTH + 8;
+    public static final int ACK_LENGTH = 1 + 8 + 8;
+    public static final int CANCEL_ACK_LENGTH = 1 + 8 + 1;
+    public static final int FILL_LENGTH = 1 + 8 + 8 + 8 + 4;
+    public static final int REJECT_LENGTH = 1 + 8 + 1;
+    public static final int MAX_LENGTH = NEW_LENGTH;
+    
+    // REJECT reasons
+    public static final byte REJECT_NOT_LOGGED_IN = 1;
+    public static final byte REJECT_INVALID = 2;
+    public static final byte REJECT_ENGINE_STOPPED = 3;
+    public static final byte REJECT_RISK = 16; // Plus the RiskManager reject code
+    
+    private GatewayProtocol() {
+    }
+    
+    // -1 for an unknown type, which leaves the stream unframeable
+    public static int lengthOf(byte type) {
+        switch (type) {
+            case LOGIN: return LOGIN_LENGTH;
+            case NEW: return NEW_LENGTH;
+            case CANCEL: return CANCEL_LENGTH;
+            case ACK: return ACK_LENGTH;
+            case CANCEL_ACK: return CANCEL_ACK_LENGTH;
+            case FILL: return FILL_LENGTH;
+            case REJECT: return REJECT_LENGTH;
+            default: return -1;
+        }
+    }
+    
+    public static void putLogin(ByteBuffer buffer, String traderId) {
+        buffer.put(LOGIN);
+        putAscii(buffer, traderId, TRADER_ID_LENGTH);
+    }
+    
+    public static void putNew(ByteBuffer buffer, long clientOrderId, long symbol, Order.Side side,
+                              Order.Type type, long price, int quantity) {
+        buffer.put(NEW);
+        buffer.putLong(clientOrderId);
+        buffer.putLong(symbol);
+        buffer.put((byte) side.ordinal());
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(price);
+        buffer.putInt(quantity);
+    }
+    
+    public static void putCancel(ByteBuffer buffer, long symbol, long orderId) {
+        buffer.put(CANCEL);
+        buffer.putLong(symbol);
+        buffer.putLong(orderId);
+    }
+    
+    public static void putAck(ByteBuffer buffer, long clientOrderId, long orderId) {
+        buffer.put(ACK);
+        buffer.putLong(clientOrderId);
+        buffer.putLong(orderId);
+    }
+    
+    public static void putCancelAck(ByteBuffer buffer, long orderId, boolean cancelled) {
+        buffer.put(CANCEL_ACK);
+        buffer.putLong(orderId);
+        buffer.put((byte) (cancelled ? 1 : 0));
+    }
+    
+    public static void putFill(ByteBuffer buffer, long orderId, long tradeId, long price, int quantity) {
+        buffer.put(FILL);
+        buffer.putLong(orderId);
+        buffer.putLong(tradeId);
+        buffer.putLong(price);
+        buffer.putInt(quantity);
+    }
+    
+    public static void putReject(ByteBuffer buffer, long clientOrderId, byte reason) {
+        buffer.put(REJECT);
+        buffer.putLong(clientOrderId);
+        buffer.put(reason);
+    }
+    
+    // A symbol's wire form as one long, so it can be written once and looked up without decoding
+    public static long packSymbol(String symbol) {
+        if (symbol.length() > SYMBOL_LENGTH) {
+            throw new IllegalArgumentException("Symbol longer than " + SYMBOL_LENGTH + " chars: " + symbol);
+        }
+        long packed = 0;
+        for (int i = 0; i < SYMBOL_LENGTH; i++) {
+            packed = packed << 8 | (i < symbol.length() ? asciiAt(symbol, i) : ' ');
+        }
+        return packed;
+    }
+    
+    public static String unpackSymbol(long packed) {
+        char[] chars = new char[SYMBOL_LENGTH];
+        int length = 0;
+        for (int i = 0; i < SYMBOL_LENGTH; i++) {
+            chars[i] = (char) (packed >>> (56 - 8 * i) & 0xFF);
+            if (chars[i] != ' ') length = i + 1;
+        }
+        return new String(chars, 0, length);
+    }
+    
+    // Reads a space-padded field at an absolute offset without moving the buffer's position
+    public static String getAscii(ByteBuffer buffer, int offset, int width) {
+        char[] chars = new char[width];
+        int length = 0;
+        for (int i = 0; i < width; i++) {
+            chars[i] = (char) (buffer.get(offset + i) & 0xFF);
+            if (chars[i] != ' ') length = i + 1;
+        }
+        return new String(chars, 0, length);
+    }
+    
+    private static void putAscii(ByteBuffer buffer, String value, int width) {
+        if (value.length() > width) {
+            throw new IllegalArgumentException("Longer than " + width + " chars: " + value);
+        }
+        for (int i = 0; i < width; i++) {
+            buffer.put((byte) (i < value.length() ? asciiAt(value, i) : ' '));
+        }
+    }
+    
+    private static char asciiAt(String value, int index) {
+        char c = value.charAt(index);
+        if (c > 0x7F) {
+            throw new IllegalArgumentException("Not ASCII: " + value);
+        }
+        return c;
+    }
+}
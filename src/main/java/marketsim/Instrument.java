@@ -0,0 +1,33 @@
+package marketsim;
+
+public class Instrument {
+    public static final double DEFAULT_TICK_SIZE = 0.01;
+    
+    private final String symbol;
+    private final double tickSize;
+    
+    public Instrument(String symbol, double tickSize) {
+        if (tickSize <= 0) {
+            throw new IllegalArgumentException("Tick size must be positive: " + tickSize);
+        }
+        this.symbol = symbol;
+        this.tickSize = tickSize;
+    }
+    
+    // Rounds a decimal price to the nearest whole tick
+    public long toTicks(double price) {
+        return Math.round(price / tickSize);
+    }
+    
+    public double toPrice(long ticks) {
+        return ticks * tickSize;
+    }
+    
+    public String getSymbol() { return symbol; }
+    public double getTickSize() { return tickSize; }
+    
+    @Override
+    public String toString() {
+        return String.format("Instrument{symbol='%s', tick=%s}", symbol, tickSize);
+    }
+}
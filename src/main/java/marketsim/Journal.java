@@ -0,0 +1,300 @@
+package marketsim;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Write-ahead journal of one matching shard's commands, appended to memory-mapped segment files.
+// Only the shard's thread writes. Each record is framed as [int length][payload]; the length is
+// written after the payload, so a record torn by a crash reads as length 0 and ends the journal.
+//
+// Payload: byte type, long sequence, long timestamp, long orderId, then
+//   NEW:    byte side | order type << 1, long price, int quantity, symbol, traderId
+//   CANCEL: symbol
+//   CANCEL_ALL: symbol, traderId (orderId 0)
+//   AMEND:  long price, int quantity, symbol
+// Strings are a short char count followed by the chars, so encoding allocates nothing.
+public class Journal implements AutoCloseable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    // Longest a record waits to be forced under a steady trickle that never fills a sync batch
+    public static final long MAX_SYNC_DELAY_NANOS = 10_000_000;
+    
+    private static final byte TYPE_NEW = 1;
+    private static final byte TYPE_CANCEL = 2;
+    private static final byte TYPE_CANCEL_ALL = 3;
+    private static final byte TYPE_AMEND = 4;
+    private static final int MAX_STRING_LENGTH = 255;
+    private static final int MAX_RECORD_SIZE = 4 + 1 + 8 + 8 + 8 + 1 + 8 + 4 + 2 * (2 + 2 * MAX_STRING_LENGTH);
+    
+    private final Path directory;
+    private final int shard;
+    private final int segmentSize;
+    private final int syncBatchSize;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private long sequence; // Last sequence written
+    private int unsyncedRecords;
+    private long firstUnsyncedNanos; // When the oldest pending record was written
+    
+    // syncBatchSize: force to disk once this many records are pending (checked at each sync), or
+    // once the oldest has waited MAX_SYNC_DELAY_NANOS; 0 leaves flushing to the OS page cache
+    public Journal(Path directory, int shard, int segmentSize, int syncBatchSize) throws IOException {
+        if (segmentSize < MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + MAX_RECORD_SIZE);
+        }
+        this.directory = directory;
+        this.shard = shard;
+        this.segmentSize = segmentSize;
+        this.syncBatchSize = syncBatchSize;
+        Files.createDirectories(directory);
+        openForAppend();
+    }
+    
+    // Positions after the last complete record of the newest existing segment
+    private void openForAppend() throws IOException {
+        List<Path> segments = segmentFiles(directory, shard);
+        if (segments.isEmpty()) {
+            mapSegment(0);
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        mapSegment(segmentIndexOf(last));
+        while (segment.remaining() >= 4) {
+            int length = segment.getInt(segment.position());
+            if (length == 0) break;
+            sequence = segment.getLong(segment.position() + 5);
+            segment.position(segment.position() + 4 + length);
+        }
+        // A record torn by a crash has its body but no length; clear it, or a shorter record written
+        // over it would be followed by stale bytes that read as the next length
+        int tornEnd = Math.min(segment.limit(), segment.position() + MAX_RECORD_SIZE);
+        for (int i = segment.position(); i < tornEnd; i++) {
+            segment.put(i, (byte) 0);
+        }
+        if (sequence == 0 && segments.size() > 1) {
+            // Newest segment is empty: the last sequence lives in the one before
+            ReplayCursor cursor = new ReplayCursor(map(segments.get(segments.size() - 2), segmentSize));
+            while (cursor.next()) {
+                sequence = cursor.sequence;
+            }
+        }
+    }
+    
+    public void appendNew(long timestamp, long orderId, String symbol, String traderId,
+                          Order.Side side, Order.Type type, long price, int quantity) throws IOException {
+        int start = beginRecord(TYPE_NEW, timestamp, orderId);
+        segment.put((byte) (side.ordinal() | type.ordinal() << 1));
+        segment.putLong(price);
+        segment.putInt(quantity);
+        putString(symbol);
+        putString(traderId);
+        endRecord(start);
+    }
+    
+    public void appendCancel(long timestamp, long orderId, String symbol) throws IOException {
+        int start = beginRecord(TYPE_CANCEL, timestamp, orderId);
+        putString(symbol);
+        endRecord(start);
+    }
+    
+    public void appendCancelAll(long timestamp, String symbol, String traderId) throws IOException {
+        int start = beginRecord(TYPE_CANCEL_ALL, timestamp, 0);
+        putString(symbol);
+        putString(traderId);
+        endRecord(start);
+    }
+    
+    public void appendAmend(long timestamp, long orderId, String symbol, long price, int quantity) throws IOException {
+        int start = beginRecord(TYPE_AMEND, timestamp, orderId);
+        segment.putLong(price);
+        segment.putInt(quantity);
+        putString(symbol);
+        endRecord(start);
+    }
+    
+    private int beginRecord(byte type, long timestamp, long orderId) throws IOException {
+        if (segment.remaining() < MAX_RECORD_SIZE) {
+            segment.force();
+            mapSegment(segmentIndex + 1);
+        }
+        int start = segment.position();
+        segment.position(start + 4);
+        segment.put(type);
+        segment.putLong(++sequence);
+        segment.putLong(timestamp);
+        segment.putLong(orderId);
+        return start;
+    }
+    
+    private void endRecord(int start) {
+        segment.putInt(start, segment.position() - start - 4);
+        if (unsyncedRecords++ == 0) {
+            firstUnsyncedNanos = System.nanoTime();
+        }
+    }
+    
+    private void putString(String value) {
+        int length = value.length();
+        if (length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Journal strings are limited to " + MAX_STRING_LENGTH + " chars: " + value);
+        }
+        segment.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            segment.putChar(value.charAt(i));
+        }
+    }
+    
+    // Called by the shard after each drained batch, and with idle set when its queue was empty:
+    // nothing is left to batch with then, so whatever is pending is forced right away
+    public void sync(boolean idle) {
+        if (syncBatchSize <= 0 || unsyncedRecords == 0) return;
+        if (idle || unsyncedRecords >= syncBatchSize || System.nanoTime() - firstUnsyncedNanos >= MAX_SYNC_DELAY_NANOS) {
+            segment.force();
+            unsyncedRecords = 0;
+        }
+    }
+    
+    @Override
+    public void close() {
+        segment.force();
+        unsyncedRecords = 0;
+    }
+    
+    public long getSequence() {
+        return sequence;
+    }
+    
+    private void mapSegment(int index) throws IOException {
+        segmentIndex = index;
+        segment = map(segmentPath(directory, shard, index), segmentSize);
+    }
+    
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+    
+    private static Path segmentPath(Path directory, int shard, int index) {
+        return directory.resolve(String.format("shard-%d-%06d.journal", shard, index));
+    }
+    
+    private static int segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.indexOf('.')));
+    }
+    
+    // Segment files of one shard, oldest first
+    static List<Path> segmentFiles(Path directory, int shard) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return segments;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "shard-" + shard + "-*.journal")) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+    
+    // Replays every complete record of one shard's journal and returns the number of records read
+    public static long replay(Path directory, int shard, JournalRecordHandler handler) throws IOException {
+        return replay(directory, shard, 0, handler);
+    }
+    
+    // Replays records with a sequence above afterSequence (e.g. the one a checkpoint covers).
+    // Whole segments that end at or before it are skipped without being scanned.
+    public static long replay(Path directory, int shard, long afterSequence, JournalRecordHandler handler) throws IOException {
+        List<Path> segments = segmentFiles(directory, shard);
+        long count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= afterSequence + 1) continue;
+            
+            ReplayCursor cursor = new ReplayCursor(mapReadOnly(segments.get(i)));
+            while (cursor.next()) {
+                if (cursor.sequence > afterSequence) {
+                    cursor.dispatch(handler);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    // Sequence of the first record in a segment, or Long.MAX_VALUE if it has none
+    private static long firstSequence(Path segment) throws IOException {
+        ReplayCursor cursor = new ReplayCursor(mapReadOnly(segment));
+        return cursor.next() ? cursor.sequence : Long.MAX_VALUE;
+    }
+    
+    private static MappedByteBuffer mapReadOnly(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+    
+    private static class ReplayCursor {
+        private final MappedByteBuffer buffer;
+        private byte type;
+        private long sequence;
+        private long timestamp;
+        private long orderId;
+        private int payloadStart;
+        
+        ReplayCursor(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        boolean next() {
+            if (buffer.remaining() < 4) return false;
+            int length = buffer.getInt(buffer.position());
+            if (length == 0) return false;
+            payloadStart = buffer.position() + 4;
+            type = buffer.get(payloadStart);
+            sequence = buffer.getLong(payloadStart + 1);
+            timestamp = buffer.getLong(payloadStart + 9);
+            orderId = buffer.getLong(payloadStart + 17);
+            buffer.position(payloadStart + length);
+            return true;
+        }
+        
+        void dispatch(JournalRecordHandler handler) {
+            int position = payloadStart + 25;
+            if (type == TYPE_NEW) {
+                byte sideAndType = buffer.get(position);
+                Order.Side side = Order.Side.values()[sideAndType & 1];
+                Order.Type orderType = Order.Type.values()[sideAndType >> 1];
+                long price = buffer.getLong(position + 1);
+                int quantity = buffer.getInt(position + 9);
+                position += 13;
+                String symbol = getString(position);
+                position += 2 + 2 * symbol.length();
+                String traderId = getString(position);
+                handler.onNew(sequence, timestamp, orderId, symbol, traderId, side, orderType, price, quantity);
+            } else if (type == TYPE_CANCEL) {
+                handler.onCancel(sequence, timestamp, orderId, getString(position));
+            } else if (type == TYPE_CANCEL_ALL) {
+                String symbol = getString(position);
+                handler.onCancelAll(sequence, timestamp, symbol, getString(position + 2 + 2 * symbol.length()));
+            } else if (type == TYPE_AMEND) {
+                handler.onAmend(sequence, timestamp, orderId, getString(position + 12), buffer.getLong(position),
+                        buffer.getInt(position + 8));
+            } else {
+                throw new IllegalStateException("Unknown journal record type " + type + " at sequence " + sequence);
+            }
+        }
+        
+        private String getString(int position) {
+            int length = buffer.getShort(position);
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = buffer.getChar(position + 2 + 2 * i);
+            }
+            return new String(chars);
+        }
+    }
+}
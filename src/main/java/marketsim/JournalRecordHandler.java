@@ -0,0 +1,13 @@
+package marketsim;
+
+// Receives decoded journal records during replay, in the order they were journaled
+public interface JournalRecordHandler {
+    void onNew(long sequence, long timestamp, long orderId, String symbol, String traderId,
+               Order.Side side, Order.Type type, long price, int quantity);
+    
+    void onCancel(long sequence, long timestamp, long orderId, String symbol);
+    
+    void onCancelAll(long sequence, long timestamp, String symbol, String traderId);
+    
+    void onAmend(long sequence, long timestamp, long orderId, String symbol, long price, int quantity);
+}
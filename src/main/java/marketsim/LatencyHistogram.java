@@ -0,0 +1,114 @@
+package marketsim;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of nanosecond values: 32 linear sub-buckets per power of two keeps every
+// reported value within ~3% of the recorded one. Fixed size and allocation-free. Single writer:
+// record() and add() are plain read-then-lazySet updates, so only one thread may write a given
+// histogram; any thread may read it. Threads that all record keep one each and add() them on read.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount;
+    private final AtomicLong totalNanos;
+    private final AtomicLong maxNanos;
+    
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        this.totalCount = new AtomicLong();
+        this.totalNanos = new AtomicLong();
+        this.maxNanos = new AtomicLong();
+    }
+    
+    // Writer thread only
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int index = indexOf(value);
+        counts.lazySet(index, counts.get(index) + 1);
+        totalNanos.lazySet(totalNanos.get() + value);
+        if (value > maxNanos.get()) {
+            maxNanos.lazySet(value);
+        }
+        totalCount.lazySet(totalCount.get() + 1);
+    }
+    
+    // Writer thread only: adds every value recorded in other, e.g. to combine per-thread histograms
+    // into a fresh one on read
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.lazySet(i, counts.get(i) + count);
+            }
+        }
+        totalNanos.lazySet(totalNanos.get() + other.totalNanos.get());
+        long value = other.maxNanos.get();
+        if (value > maxNanos.get()) {
+            maxNanos.lazySet(value);
+        }
+        totalCount.lazySet(totalCount.get() + other.totalCount.get());
+    }
+    
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+    
+    // Largest value that lands in the bucket
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+    
+    // percentile in [0, 100]
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+    
+    public long getCount() {
+        return totalCount.get();
+    }
+    
+    public long getMax() {
+        return maxNanos.get();
+    }
+    
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalNanos.get() / count;
+    }
+    
+    // One-line summary in microseconds
+    public String summary() {
+        return String.format("p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f us (n=%d)",
+                getValueAtPercentile(50) / 1000.0,
+                getValueAtPercentile(90) / 1000.0,
+                getValueAtPercentile(99) / 1000.0,
+                getValueAtPercentile(99.9) / 1000.0,
+                getValueAtPercentile(99.99) / 1000.0,
+                getMax() / 1000.0,
+                getCount());
+    }
+}
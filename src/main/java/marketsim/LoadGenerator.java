@@ -0,0 +1,235 @@
+package marketsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop load: every simulated trader sends on its own Poisson schedule and a few event-loop
+// threads fire the traders whose time has come. A send that is late because the engine pushed back
+// still counts from its intended time, so a stall shows up in the latencies instead of silently
+// lowering the offered rate (no coordinated omission).
+public class LoadGenerator {
+    public static final double DEFAULT_CANCEL_RATIO = 0.3;
+    public static final double DEFAULT_AGGRESSIVE_RATIO = 0.1;
+    public static final double DEFAULT_SYMBOL_SKEW = 1.0;
+    private static final double REFERENCE_PRICE = 100.0;
+    
+    private final MatchingEngine engine;
+    private final String[] symbols;
+    private final double[] symbolCdf; // Zipf weights: symbols earlier in the array trade more
+    private final int[] symbolIds; // Engine ids of symbols, resolved by start()
+    private final Instrument[] instruments;
+    private final Trader[] traders;
+    private final int ordersPerSecond;
+    private final int threadCount;
+    private final long seed;
+    private final double cancelRatio;
+    private final double aggressiveRatio;
+    private final List<Thread> threads;
+    private final LatencyHistogram[] sendLatencies; // One per generator thread, recorded by it
+    private final LatencyHistogram cancelLatency;
+    private final AtomicLong passiveSent;
+    private final AtomicLong aggressiveSent;
+    private final AtomicLong cancelsSent;
+    private final AtomicLong cancelsRejected;
+    private volatile boolean running;
+    private long startNanos;
+    private long stopNanos;
+    
+    public LoadGenerator(MatchingEngine engine, String[] symbols, int traderCount, int ordersPerSecond,
+                         int threadCount, long seed) {
+        this(engine, symbols, traderCount, ordersPerSecond, threadCount, seed,
+             DEFAULT_CANCEL_RATIO, DEFAULT_AGGRESSIVE_RATIO, DEFAULT_SYMBOL_SKEW);
+    }
+    
+    public LoadGenerator(MatchingEngine engine, String[] symbols, int traderCount, int ordersPerSecond,
+                         int threadCount, long seed, double cancelRatio, double aggressiveRatio,
+                         double symbolSkew) {
+        if (traderCount < 1 || ordersPerSecond < 1 || threadCount < 1) {
+            throw new IllegalArgumentException("Traders, rate and threads must be positive");
+        }
+        if (cancelRatio < 0 || aggressiveRatio < 0 || cancelRatio + aggressiveRatio > 1) {
+            throw new IllegalArgumentException("Cancel and aggressive ratios must add up to at most 1");
+        }
+        this.engine = engine;
+        this.symbols = symbols.clone();
+        this.symbolCdf = new double[symbols.length];
+        this.symbolIds = new int[symbols.length];
+        this.instruments = new Instrument[symbols.length];
+        double total = 0;
+        for (int i = 0; i < symbols.length; i++) {
+            total += 1.0 / Math.pow(i + 1, symbolSkew);
+            symbolCdf[i] = total;
+        }
+        for (int i = 0; i < symbols.length; i++) {
+            symbolCdf[i] /= total;
+        }
+        this.traders = new Trader[traderCount];
+        for (int i = 0; i < traderCount; i++) {
+            traders[i] = new Trader(String.format("TRADER%04d", i + 1), seed * 31 + i);
+        }
+        this.ordersPerSecond = ordersPerSecond;
+        this.threadCount = Math.min(threadCount, traderCount);
+        this.seed = seed;
+        this.cancelRatio = cancelRatio;
+        this.aggressiveRatio = aggressiveRatio;
+        this.threads = new ArrayList<>();
+        this.sendLatencies = new LatencyHistogram[this.threadCount];
+        for (int i = 0; i < sendLatencies.length; i++) {
+            sendLatencies[i] = new LatencyHistogram();
+        }
+        this.cancelLatency = new LatencyHistogram();
+        this.passiveSent = new AtomicLong();
+        this.aggressiveSent = new AtomicLong();
+        this.cancelsSent = new AtomicLong();
+        this.cancelsRejected = new AtomicLong();
+    }
+    
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        // Names are resolved once here, so sending never hashes a symbol or trader id
+        for (int i = 0; i < symbols.length; i++) {
+            symbolIds[i] = engine.registerSymbol(symbols[i]);
+            instruments[i] = engine.getInstrument(symbols[i]);
+        }
+        for (Trader trader : traders) {
+            trader.id = engine.getTraderDirectory().register(trader.getTraderId());
+        }
+        running = true;
+        startNanos = System.nanoTime();
+        for (int i = 0; i < threadCount; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> run(index), "Load-Generator-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+    
+    public synchronized void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+        stopNanos = System.nanoTime();
+    }
+    
+    private void run(int index) {
+        // Each trader fires at ordersPerSecond / traders on average
+        double meanGapNanos = 1e9 * traders.length / ordersPerSecond;
+        PriorityQueue<Trader> schedule = new PriorityQueue<>(Comparator.comparingLong(t -> t.nextArrivalNanos));
+        for (int i = index; i < traders.length; i += threadCount) {
+            traders[i].nextArrivalNanos = startNanos + traders[i].nextGapNanos(meanGapNanos);
+            schedule.add(traders[i]);
+        }
+        
+        while (running) {
+            Trader trader = schedule.peek();
+            long wait = trader.nextArrivalNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            schedule.poll();
+            try {
+                send(trader);
+            } catch (IllegalStateException e) {
+                // Engine stopped underneath us
+                break;
+            }
+            sendLatencies[index].record(System.nanoTime() - trader.nextArrivalNanos);
+            trader.nextArrivalNanos += trader.nextGapNanos(meanGapNanos);
+            schedule.add(trader);
+        }
+    }
+    
+    private void send(Trader trader) {
+        Trader.Action action = trader.nextAction(cancelRatio, aggressiveRatio);
+        if (action == Trader.Action.CANCEL) {
+            long intended = trader.nextArrivalNanos;
+            int symbol = trader.oldestSymbol();
+            long orderId = trader.oldestOrderId();
+            trader.forgetOldest();
+            cancelsSent.incrementAndGet();
+            engine.cancelOrderAsync(symbol, orderId).whenComplete((cancelled, error) -> {
+                // Completed on the shard threads, several of which may write the histogram
+                synchronized (cancelLatency) {
+                    cancelLatency.record(System.nanoTime() - intended);
+                }
+                if (!Boolean.TRUE.equals(cancelled)) {
+                    cancelsRejected.incrementAndGet();
+                }
+            });
+            return;
+        }
+        
+        int symbolIndex = Arrays.binarySearch(symbolCdf, trader.random().nextDouble());
+        symbolIndex = Math.min(symbols.length - 1, symbolIndex < 0 ? -symbolIndex - 1 : symbolIndex);
+        long mid = instruments[symbolIndex].toTicks(REFERENCE_PRICE);
+        Order.Side side = trader.random().nextBoolean() ? Order.Side.BUY : Order.Side.SELL;
+        int direction = side == Order.Side.BUY ? 1 : -1;
+        
+        Order.Type type = Order.Type.LIMIT;
+        long price;
+        if (action == Trader.Action.AGGRESSIVE) {
+            // IOC through the mid by a few ticks: takes whatever rests near the touch, never rests itself
+            type = Order.Type.IOC;
+            price = mid + direction * (1 + trader.random().nextInt(5));
+            aggressiveSent.incrementAndGet();
+        } else {
+            // Behind the mid on the trader's own side, clustered near the touch
+            long offset = 1 + (long) Math.abs(trader.random().nextGaussian() * 20);
+            price = Math.max(1, mid - direction * offset);
+            passiveSent.incrementAndGet();
+        }
+        int quantity = 100 + trader.random().nextInt(900);
+        int symbol = symbolIds[symbolIndex];
+        long orderId = engine.submitOrder(trader.id, symbol, side, type, price, quantity);
+        // Only a LIMIT order can still be resting for a later cancel; an IOC is done once matched
+        if (orderId > 0 && type == Order.Type.LIMIT) {
+            trader.remember(symbol, orderId);
+        }
+    }
+    
+    public long getOrdersSent() {
+        return passiveSent.get() + aggressiveSent.get() + cancelsSent.get();
+    }
+    
+    // Intended send time to accepted by the engine's ingress queue
+    public LatencyHistogram getSendLatency() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : sendLatencies) {
+            merged.add(histogram);
+        }
+        return merged;
+    }
+    
+    // Intended send time to cancel applied by the matching thread
+    public LatencyHistogram getCancelLatency() {
+        return cancelLatency;
+    }
+    
+    public String report() {
+        long end = running ? System.nanoTime() : stopNanos;
+        double seconds = Math.max(1, end - startNanos) / 1e9;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Traders: %d on %d threads, seed %d%n", traders.length, threadCount, seed));
+        report.append(String.format("Target rate: %d orders/s, achieved: %.0f orders/s over %.1f s%n",
+                ordersPerSecond, getOrdersSent() / seconds, seconds));
+        report.append(String.format("Sent: %d passive, %d aggressive, %d cancels (%d rejected)%n",
+                passiveSent.get(), aggressiveSent.get(), cancelsSent.get(), cancelsRejected.get()));
+        report.append("Send latency:   ").append(getSendLatency().summary()).append(System.lineSeparator());
+        report.append("Cancel latency: ").append(cancelLatency.summary()).append(System.lineSeparator());
+        return report.toString();
+    }
+}
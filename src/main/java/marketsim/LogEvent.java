@@ -0,0 +1,119 @@
+package marketsim;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Preallocated slot of an EventLog ring: a template and its raw arguments. Nothing is formatted
+// until the log's writer thread turns the event into text.
+public class LogEvent {
+    static final int MAX_ARGS = 8;
+    private static final byte OBJECT = 0, LONG = 1, DOUBLE = 2;
+    
+    long sequence; // Ring position, owned by the log
+    EventLog.Level level;
+    String template; // "{}" marks where each argument goes, in order
+    String threadName;
+    long timeMillis;
+    private final Object[] objects = new Object[MAX_ARGS];
+    private final long[] values = new long[MAX_ARGS];
+    private final byte[] kinds = new byte[MAX_ARGS];
+    private final byte[] decimals = new byte[MAX_ARGS]; // Fixed decimals of a double, or -1 for all
+    private int argCount;
+    
+    void reset(long sequence, EventLog.Level level, String template) {
+        this.sequence = sequence;
+        this.level = level;
+        this.template = template;
+        this.threadName = Thread.currentThread().getName();
+        this.timeMillis = System.currentTimeMillis();
+        this.argCount = 0;
+    }
+    
+    // Objects are rendered with String.valueOf() on the writer thread, so they must not change
+    // after being added; arguments past MAX_ARGS are ignored. At WARN and above, the stack trace of
+    // the first Throwable follows the message.
+    public LogEvent add(Object value) {
+        if (argCount < MAX_ARGS) {
+            objects[argCount] = value;
+            kinds[argCount++] = OBJECT;
+        }
+        return this;
+    }
+    
+    public LogEvent add(long value) {
+        if (argCount < MAX_ARGS) {
+            values[argCount] = value;
+            kinds[argCount++] = LONG;
+        }
+        return this;
+    }
+    
+    public LogEvent add(double value) {
+        return add(value, -1);
+    }
+    
+    // Rendered rounded to the given number of decimal places, e.g. prices
+    public LogEvent add(double value, int places) {
+        if (argCount < MAX_ARGS) {
+            values[argCount] = Double.doubleToRawLongBits(value);
+            decimals[argCount] = (byte) places;
+            kinds[argCount++] = DOUBLE;
+        }
+        return this;
+    }
+    
+    // Writer thread: appends the message and drops the object references
+    void formatTo(StringBuilder out) {
+        Throwable thrown = null;
+        int arg = 0;
+        int from = 0;
+        int at;
+        while ((at = template.indexOf("{}", from)) >= 0) {
+            out.append(template, from, at);
+            if (arg < argCount) {
+                switch (kinds[arg]) {
+                    case LONG: out.append(values[arg]); break;
+                    case DOUBLE: appendDouble(out, Double.longBitsToDouble(values[arg]), decimals[arg]); break;
+                    default:
+                        if (thrown == null && objects[arg] instanceof Throwable) thrown = (Throwable) objects[arg];
+                        out.append(objects[arg]);
+                        objects[arg] = null;
+                        break;
+                }
+                arg++;
+            } else {
+                out.append("{}");
+            }
+            from = at + 2;
+        }
+        out.append(template, from, template.length());
+        for (; arg < argCount; arg++) {
+            if (thrown == null && objects[arg] instanceof Throwable) thrown = (Throwable) objects[arg];
+            objects[arg] = null;
+        }
+        if (thrown != null && level.compareTo(EventLog.Level.WARN) >= 0) {
+            appendStackTrace(out, thrown);
+        }
+    }
+    
+    // On the following lines, without the trailing line break
+    private static void appendStackTrace(StringBuilder out, Throwable thrown) {
+        StringWriter trace = new StringWriter();
+        thrown.printStackTrace(new PrintWriter(trace));
+        int end = trace.getBuffer().length();
+        while (end > 0 && Character.isWhitespace(trace.getBuffer().charAt(end - 1))) {
+            end--;
+        }
+        out.append(System.lineSeparator()).append(trace.getBuffer(), 0, end);
+    }
+    
+    private static void appendDouble(StringBuilder out, double value, int places) {
+        if (places < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append(value);
+        } else {
+            out.append(BigDecimal.valueOf(value).setScale(places, RoundingMode.HALF_EVEN).toPlainString());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package marketsim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Open-addressing long -> int map with linear probing, for non-negative values such as slot
+// numbers. Nothing is boxed: an entry is a long key next to an int value in one buffer, on the heap
+// or off it, and removal shifts later entries of the probe run back instead of leaving tombstones.
+public class LongIntHashMap {
+    public static final int MISSING = -1; // Returned for absent keys; also marks an empty slot
+    
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+    private static final int ENTRY_SIZE = 12;
+    private static final int VALUE = 8;
+    
+    private final boolean offHeap;
+    private ByteBuffer entries;
+    private int mask;
+    private int shift;
+    private int size;
+    
+    public LongIntHashMap(int expectedSize) {
+        this(expectedSize, false);
+    }
+    
+    public LongIntHashMap(int expectedSize, boolean offHeap) {
+        this.offHeap = offHeap;
+        allocate(capacityFor(expectedSize));
+    }
+    
+    // Smallest power of two that holds the entries at the 0.5 load factor
+    private static int capacityFor(int entries) {
+        return Integer.highestOneBit(Math.max(4, entries) * 2 - 1) << 1;
+    }
+    
+    private void allocate(int capacity) {
+        int bytes = capacity * ENTRY_SIZE;
+        entries = (offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes)).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < capacity; i++) {
+            setValue(i, MISSING);
+        }
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+    
+    private int slot(long key) {
+        return (int) ((key * PHI) >>> shift);
+    }
+    
+    private long key(int i) { return entries.getLong(i * ENTRY_SIZE); }
+    private int value(int i) { return entries.getInt(i * ENTRY_SIZE + VALUE); }
+    private void setKey(int i, long key) { entries.putLong(i * ENTRY_SIZE, key); }
+    private void setValue(int i, int value) { entries.putInt(i * ENTRY_SIZE + VALUE, value); }
+    
+    public int get(long key) {
+        for (int i = slot(key); value(i) != MISSING; i = (i + 1) & mask) {
+            if (key(i) == key) return value(i);
+        }
+        return MISSING;
+    }
+    
+    // Returns the previous value, or MISSING
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must be non-negative: " + value);
+        }
+        int i = slot(key);
+        for (; value(i) != MISSING; i = (i + 1) & mask) {
+            if (key(i) == key) {
+                int previous = value(i);
+                setValue(i, value);
+                return previous;
+            }
+        }
+        setKey(i, key);
+        setValue(i, value);
+        if (++size > (mask + 1) / 2) {
+            rehash((mask + 1) * 2);
+        }
+        return MISSING;
+    }
+    
+    // Returns the removed value, or MISSING
+    public int remove(long key) {
+        int i = slot(key);
+        for (; value(i) != MISSING; i = (i + 1) & mask) {
+            if (key(i) == key) {
+                int removed = value(i);
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+        }
+        return MISSING;
+    }
+    
+    // Backward-shift deletion: pull forward any later entry whose home slot is at or before the gap
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (value(i) == MISSING) break;
+            int home = slot(key(i));
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                setKey(gap, key(i));
+                setValue(gap, value(i));
+                gap = i;
+            }
+        }
+        setValue(gap, MISSING);
+    }
+    
+    private void rehash(int capacity) {
+        ByteBuffer old = entries;
+        int oldCapacity = mask + 1;
+        allocate(capacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            int value = old.getInt(i * ENTRY_SIZE + VALUE);
+            if (value != MISSING) {
+                long key = old.getLong(i * ENTRY_SIZE);
+                int j = slot(key);
+                while (value(j) != MISSING) {
+                    j = (j + 1) & mask;
+                }
+                setKey(j, key);
+                setValue(j, value);
+            }
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+    
+    // Bytes held by the table right now
+    public long footprintBytes() {
+        return (long) (mask + 1) * ENTRY_SIZE;
+    }
+    
+    // Bytes a map holding this many entries settles at, e.g. ~25 bytes per order at a million
+    public static long footprintBytes(int entries) {
+        return (long) capacityFor(entries) * ENTRY_SIZE;
+    }
+}
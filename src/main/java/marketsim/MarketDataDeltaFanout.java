@@ -0,0 +1,56 @@
+package marketsim;
+
+// Forwards book deltas to every registered listener. The listener array is replaced on
+// registration rather than iterated through a CopyOnWriteArrayList, so emitting allocates nothing.
+public class MarketDataDeltaFanout implements MarketDataDeltaListener {
+    private volatile MarketDataDeltaListener[] listeners = new MarketDataDeltaListener[0];
+    private final EventLog log;
+    
+    public MarketDataDeltaFanout(EventLog log) {
+        this.log = log;
+    }
+    
+    public synchronized void add(MarketDataDeltaListener listener) {
+        MarketDataDeltaListener[] grown = new MarketDataDeltaListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, grown, 0, listeners.length);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+    
+    public boolean isEmpty() {
+        return listeners.length == 0;
+    }
+    
+    @Override
+    public void onLevelUpdate(String symbol, long sequence, Order.Side side, long price, long quantity, int orderCount) {
+        for (MarketDataDeltaListener listener : listeners) {
+            try {
+                listener.onLevelUpdate(symbol, sequence, side, price, quantity, orderCount);
+            } catch (Exception e) {
+                log.log(EventLog.Level.ERROR, "Error notifying market data delta listener: {}", e);
+            }
+        }
+    }
+    
+    @Override
+    public void onTopOfBook(String symbol, long sequence, long bidPrice, long bidQuantity, long askPrice, long askQuantity) {
+        for (MarketDataDeltaListener listener : listeners) {
+            try {
+                listener.onTopOfBook(symbol, sequence, bidPrice, bidQuantity, askPrice, askQuantity);
+            } catch (Exception e) {
+                log.log(EventLog.Level.ERROR, "Error notifying market data delta listener: {}", e);
+            }
+        }
+    }
+    
+    @Override
+    public void onRefresh(OrderBookSnapshot snapshot) {
+        for (MarketDataDeltaListener listener : listeners) {
+            try {
+                listener.onRefresh(snapshot);
+            } catch (Exception e) {
+                log.log(EventLog.Level.ERROR, "Error notifying market data delta listener: {}", e);
+            }
+        }
+    }
+}
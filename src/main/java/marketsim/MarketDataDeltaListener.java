@@ -0,0 +1,15 @@
+package marketsim;
+
+// Incremental market data. Deltas for a symbol arrive on its matching shard's thread, right
+// after the command that caused them; sequence numbers are per symbol and have no gaps.
+public interface MarketDataDeltaListener {
+    // New aggregate quantity resting at a price level; quantity 0 means the level is gone
+    void onLevelUpdate(String symbol, long sequence, Order.Side side, long price, long quantity, int orderCount);
+    
+    // Best bid/ask after a change; price and quantity are 0 for an empty side
+    void onTopOfBook(String symbol, long sequence, long bidPrice, long bidQuantity, long askPrice, long askQuantity);
+    
+    // Periodic full state for late joiners; covers every delta up to snapshot.getSequence()
+    default void onRefresh(OrderBookSnapshot snapshot) {
+    }
+}
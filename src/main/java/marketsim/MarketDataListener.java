@@ -1,3 +1,5 @@
+package marketsim;
+
 @FunctionalInterface
 public interface MarketDataListener {
     void onMarketData(OrderBookSnapshot snapshot);
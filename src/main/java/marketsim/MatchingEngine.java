@@ -0,0 +1,976 @@
+package marketsim;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+public class MatchingEngine {
+    private static final int DEFAULT_RING_SIZE = 1 << 16;
+    private static final int DEFAULT_LISTENER_CAPACITY = 1 << 14;
+    private static final int DEFAULT_LOG_SIZE = 1 << 12;
+    private static final int REFRESH_EVERY_TICKS = 5; // Full refresh to delta listeners every 5 market data ticks
+    
+    private final Directory symbols; // Dense symbol ids: index books and bookShards
+    private final Directory traders;
+    private volatile OrderBook[] books; // By symbol id, null until the symbol has a book; replaced to grow
+    private volatile int[] bookShards; // By symbol id: owning shard. Written before books, so read books first
+    private final Map<String, Instrument> instruments;
+    private final MatchingShard[] shards;
+    private final Map<String, Integer> shardAssignments;
+    private final ExecutorService marketDataExecutor;
+    private final ScheduledExecutorService checkpointExecutor;
+    private final long[] checkpointSequences; // Per shard: journal sequence covered by the loaded checkpoint
+    private volatile TradeDispatcher[] tradeDispatchers; // Replaced on registration
+    private final List<MarketDataListener> marketDataListeners;
+    private final MarketDataDeltaFanout deltaListeners;
+    private final EngineMetrics metrics;
+    private final EventLog eventLog;
+    private final Map<String, OrderBookSnapshot> lastDistributed; // Market data thread only
+    private long marketDataTicks; // Market data thread only
+    private volatile RiskManager riskManager; // Optional pre-trade checks
+    private volatile boolean offHeapOrders;
+    private volatile boolean running;
+    
+    public MatchingEngine() {
+        this(1);
+    }
+    
+    public MatchingEngine(int shardCount) {
+        this(shardCount, () -> new RingBufferIngress(DEFAULT_RING_SIZE, WaitStrategy.PARKING));
+    }
+    
+    // ingressFactory is called once per shard to build that shard's inbound queue
+    public MatchingEngine(int shardCount, Supplier<OrderIngress> ingressFactory) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+        }
+        this.eventLog = new EventLog(System.out, EventLog.Level.INFO, DEFAULT_LOG_SIZE);
+        this.symbols = new Directory();
+        this.traders = new Directory();
+        this.books = new OrderBook[16];
+        this.bookShards = new int[16];
+        this.instruments = new ConcurrentHashMap<>();
+        this.shards = new MatchingShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new MatchingShard(i, ingressFactory.get(), this::validateCommand, this::processCommand,
+                    eventLog);
+        }
+        this.shardAssignments = new ConcurrentHashMap<>();
+        this.marketDataExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "MarketData-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        this.tradeDispatchers = new TradeDispatcher[0];
+        this.checkpointExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Checkpoint-Writer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.checkpointSequences = new long[shardCount];
+        this.marketDataListeners = new CopyOnWriteArrayList<>();
+        this.deltaListeners = new MarketDataDeltaFanout(eventLog);
+        this.lastDistributed = new HashMap<>();
+        this.metrics = new EngineMetrics(shards, eventLog);
+        this.running = false;
+    }
+    
+    public void start() {
+        if (running) return;
+        running = true;
+        
+        // Start one order processing thread per shard
+        for (MatchingShard shard : shards) {
+            shard.start();
+        }
+        
+        // Start market data distribution thread
+        marketDataExecutor.submit(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(1000);
+                    distributeMarketData();
+                    metrics.sample(allBooks());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    eventLog.log(EventLog.Level.ERROR, "Error distributing market data: {}", e);
+                }
+            }
+        });
+        
+        eventLog.log(EventLog.Level.INFO, "Matching Engine started");
+    }
+    
+    public void stop() {
+        running = false;
+        for (MatchingShard shard : shards) {
+            shard.shutdown();
+        }
+        marketDataExecutor.shutdown();
+        checkpointExecutor.shutdown();
+        
+        try {
+            for (MatchingShard shard : shards) {
+                shard.awaitTermination(5, TimeUnit.SECONDS);
+            }
+            if (!marketDataExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                marketDataExecutor.shutdownNow();
+            }
+            if (!checkpointExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                checkpointExecutor.shutdownNow();
+            }
+            // Matching has stopped, so listeners can drain what is left
+            for (TradeDispatcher dispatcher : tradeDispatchers) {
+                dispatcher.shutdown(5000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.unregisterMBeans();
+        
+        eventLog.log(EventLog.Level.INFO, "Matching Engine stopped");
+        eventLog.close();
+    }
+    
+    // Returns the order's id, or the negated RiskManager code if pre-trade checks reject it, in which
+    // case the order is also marked CANCELLED
+    public long submitOrder(Order order) {
+        if (!running) {
+            throw new IllegalStateException("Matching engine is not running");
+        }
+        
+        int symbol = symbolIdFor(order.getSymbol());
+        int verdict = verdict(order, symbol);
+        if (verdict != RiskManager.ACCEPTED) {
+            order.setStatus(Order.Status.CANCELLED);
+            return -verdict;
+        }
+        metrics.recordSubmitted();
+        shardOf(symbol).submitNew(book(symbol), order);
+        return order.getOrderId();
+    }
+    
+    // Also stamps the order with its trader id, which its trades carry to the risk manager
+    private int verdict(Order order, int symbol) {
+        int trader = traders.register(order.getTraderId());
+        order.setTraderIndex(trader);
+        return verdict(trader, symbol, order.getSide(), order.getType(), order.getPrice(),
+                order.getRemainingQuantity());
+    }
+    
+    // Pre-trade checks on the submitting thread: the book's price window, then the risk manager's limits
+    private int verdict(int trader, int symbol, Order.Side side, Order.Type type, long price, int quantity) {
+        if (!book(symbol).isPriceInWindow(side, type, price)) {
+            return RiskManager.REJECT_PRICE_WINDOW;
+        }
+        RiskManager risk = riskManager;
+        return risk != null ? risk.check(trader, symbol, side, type, price, quantity) : RiskManager.ACCEPTED;
+    }
+    
+    // Garbage-free submission: the order is built from a pooled instance on the matching thread.
+    // Returns the id to cancel it with, or the negated RiskManager code if pre-trade checks reject it.
+    public long submitOrder(String traderId, String symbol, Order.Side side, long price, int quantity) {
+        return submitOrder(traderId, symbol, side, Order.Type.LIMIT, price, quantity);
+    }
+    
+    // Bulk submission, e.g. a market maker's requote. Orders are risk-checked here and rejected ones
+    // marked CANCELLED, as with submitOrder(Order); the rest are grouped by book and each group
+    // travels to its shard as one command, applied in list order with no other command in between.
+    // The future completes with the number of orders applied once every group has been.
+    public CompletableFuture<Integer> submitOrders(List<Order> orders) {
+        if (!running) {
+            throw new IllegalStateException("Matching engine is not running");
+        }
+        
+        Map<Integer, List<Order>> groups = new LinkedHashMap<>(); // By symbol id
+        for (Order order : orders) {
+            int symbol = symbolIdFor(order.getSymbol());
+            if (verdict(order, symbol) != RiskManager.ACCEPTED) {
+                order.setStatus(Order.Status.CANCELLED);
+                continue;
+            }
+            groups.computeIfAbsent(symbol, b -> new ArrayList<>()).add(order);
+            metrics.recordSubmitted();
+        }
+        List<CompletableFuture<Integer>> results = new ArrayList<>(groups.size());
+        for (Map.Entry<Integer, List<Order>> group : groups.entrySet()) {
+            int symbol = group.getKey();
+            CompletableFuture<Integer> result = new CompletableFuture<>();
+            shardOf(symbol).submitBatch(book(symbol), group.getValue().toArray(new Order[0]), result);
+            results.add(result);
+        }
+        return sum(results);
+    }
+    
+    public CompletableFuture<Integer> submitOrders(Order... orders) {
+        return submitOrders(Arrays.asList(orders));
+    }
+    
+    // price is ignored for MARKET orders
+    public long submitOrder(String traderId, String symbol, Order.Side side, Order.Type type, long price,
+                            int quantity) {
+        return submitOrder(traders.register(traderId), symbolIdFor(symbol), side, type, price, quantity);
+    }
+    
+    // Hot path for callers that resolved their ids once, from registerSymbol() and
+    // getTraderDirectory().register(): no string is hashed between here and the book
+    public long submitOrder(int trader, int symbol, Order.Side side, Order.Type type, long price, int quantity) {
+        if (!running) {
+            throw new IllegalStateException("Matching engine is not running");
+        }
+        OrderBook orderBook = book(symbol);
+        if (orderBook == null) {
+            throw new IllegalArgumentException("No book for symbol id " + symbol + "; register the symbol first");
+        }
+        int verdict = verdict(trader, symbol, side, type, price, quantity);
+        if (verdict != RiskManager.ACCEPTED) {
+            return -verdict;
+        }
+        
+        long orderId = Order.nextId();
+        metrics.recordSubmitted();
+        shardOf(symbol).submitNew(orderBook, orderId, trader, traders.nameOf(trader), side, type, price, quantity);
+        return orderId;
+    }
+    
+    // Pins a symbol to a shard instead of hashing it; must be called before its book exists, i.e.
+    // before registerSymbol() or its first order
+    public void assignSymbol(String symbol, int shard) {
+        if (shard < 0 || shard >= shards.length) {
+            throw new IllegalArgumentException("No shard " + shard + " (shard count " + shards.length + ")");
+        }
+        if (bookOf(symbol) != null) {
+            throw new IllegalStateException("Symbol " + symbol + " already has orders on shard " + shardFor(symbol));
+        }
+        shardAssignments.put(symbol, shard);
+    }
+    
+    // String.hashCode is specified, so the symbol -> shard mapping is stable across runs
+    public int shardFor(String symbol) {
+        int id = symbols.idOf(symbol);
+        if (book(id) != null) {
+            return bookShards[id];
+        }
+        Integer assigned = shardAssignments.get(symbol);
+        return assigned != null ? assigned : Math.floorMod(symbol.hashCode(), shards.length);
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    // Pre-registers a symbol: assigns its dense id and creates its book on its shard, so the id-based
+    // calls can be used from then on. Idempotent; books are never removed, so the id stays valid.
+    public synchronized int registerSymbol(String symbol) {
+        int id = symbols.register(symbol);
+        OrderBook[] current = books;
+        if (id < current.length && current[id] != null) {
+            return id;
+        }
+        int length = id < current.length ? current.length : Integer.highestOneBit(id) * 2;
+        int[] grownShards = Arrays.copyOf(bookShards, length);
+        grownShards[id] = shardFor(symbol);
+        bookShards = grownShards;
+        OrderBook[] grown = Arrays.copyOf(current, length);
+        grown[id] = newBook(symbol, id);
+        books = grown;
+        return id;
+    }
+    
+    // Names are resolved to ids once, at the edge; everything behind works on the ids
+    public Directory getSymbolDirectory() {
+        return symbols;
+    }
+    
+    public Directory getTraderDirectory() {
+        return traders;
+    }
+    
+    // Id of a symbol that has a book, -1 otherwise; unlike registerSymbol() it never creates one
+    public int lookupSymbol(String symbol) {
+        int id = symbols.idOf(symbol);
+        return book(id) != null ? id : -1;
+    }
+    
+    private int symbolIdFor(String symbol) {
+        int id = symbols.idOf(symbol);
+        return book(id) != null ? id : registerSymbol(symbol);
+    }
+    
+    // null if the symbol id has no book (yet)
+    private OrderBook book(int symbol) {
+        OrderBook[] current = books;
+        return symbol >= 0 && symbol < current.length ? current[symbol] : null;
+    }
+    
+    private OrderBook bookOf(String symbol) {
+        return book(symbols.idOf(symbol));
+    }
+    
+    private OrderBook bookFor(String symbol) {
+        return book(symbolIdFor(symbol));
+    }
+    
+    // Only for a symbol whose book() was seen, which makes its bookShards slot visible
+    private MatchingShard shardOf(int symbol) {
+        return shards[bookShards[symbol]];
+    }
+    
+    // Every book, in symbol id order
+    private List<OrderBook> allBooks() {
+        List<OrderBook> all = new ArrayList<>();
+        for (OrderBook orderBook : books) {
+            if (orderBook != null) {
+                all.add(orderBook);
+            }
+        }
+        return all;
+    }
+    
+    // Owning shard's thread, before the command is journaled: refuses what the book would, so the
+    // journal only holds commands that apply cleanly on replay
+    private boolean validateCommand(int shard, OrderCommand command) {
+        OrderBook orderBook = command.getBook();
+        switch (command.getType()) {
+            case NEW:
+                Order order = command.getOrder();
+                if (order == null) {
+                    return orderBook.accepts(command.getSide(), command.getOrderType(), command.getPrice());
+                }
+                return accept(orderBook, order);
+            case CANCEL:
+                // An owner-checked cancel of another trader's order is answered like an unknown id
+                if (command.getTrader() >= 0 && orderBook.traderIndexOf(command.getOrderId()) != command.getTrader()) {
+                    command.getResult().complete(false);
+                    return false;
+                }
+                return true;
+            case AMEND:
+                if (!acceptAmend(orderBook, command)) {
+                    command.getResult().complete(false);
+                    return false;
+                }
+                return true;
+            case BATCH:
+                // Refused orders are marked and skipped; the rest of the batch still applies
+                orderBook.refuseOutOfWindow(command.getOrders());
+                return true;
+            default:
+                return true;
+        }
+    }
+    
+    // The resting order's trader and side are only known on its shard, so this is where an amend is
+    // risk-checked. A reduction in place only lowers exposure and is not checked.
+    private boolean acceptAmend(OrderBook orderBook, OrderCommand command) {
+        Order resting = orderBook.findOrder(command.getOrderId());
+        long price = command.getPrice();
+        int quantity = command.getQuantity();
+        if (resting == null || quantity <= 0 || !orderBook.accepts(resting.getSide(), Order.Type.LIMIT, price)) {
+            return false;
+        }
+        if (price == resting.getPrice() && quantity <= resting.getRemainingQuantity()) {
+            return true;
+        }
+        RiskManager risk = riskManager;
+        return risk == null || resting.getTraderIndex() < 0 || risk.check(resting.getTraderIndex(),
+                orderBook.getSymbolIndex(), resting.getSide(), Order.Type.LIMIT, price, quantity) == RiskManager.ACCEPTED;
+    }
+    
+    private static boolean accept(OrderBook orderBook, Order order) {
+        if (orderBook.accepts(order.getSide(), order.getType(), order.getPrice())) {
+            return true;
+        }
+        order.setStatus(Order.Status.CANCELLED);
+        return false;
+    }
+    
+    // Runs on the owning shard's thread, the only writer of the command's book
+    private void processCommand(int shard, OrderCommand command, TradeBuffer trades) {
+        OrderBook orderBook = command.getBook();
+        switch (command.getType()) {
+            case NEW:
+                Order order = command.getOrder();
+                if (order == null) {
+                    order = orderBook.acquireOrder();
+                    order.init(command.getOrderId(), command.getTraderId(), orderBook.getSymbol(), command.getSide(),
+                            command.getOrderType(), command.getPrice(), command.getQuantity(), command.getTimestamp());
+                    order.setTraderIndex(command.getTrader());
+                }
+                metrics.recordEnqueueToMatch(shard, System.nanoTime() - command.getTimestamp());
+                processOrder(shard, orderBook, order, trades);
+                break;
+            case CANCEL:
+                metrics.recordEnqueueToMatch(shard, System.nanoTime() - command.getTimestamp());
+                command.getResult().complete(orderBook.cancelOrder(command.getOrderId()));
+                break;
+            case BATCH:
+                metrics.recordEnqueueToMatch(shard, System.nanoTime() - command.getTimestamp());
+                int applied = 0;
+                for (Order batched : command.getOrders()) {
+                    if (batched.getStatus() == Order.Status.CANCELLED) continue; // Refused by validateCommand()
+                    processOrder(shard, orderBook, batched, trades);
+                    trades.clear();
+                    applied++;
+                }
+                command.getCountResult().complete(applied);
+                break;
+            case CANCEL_ALL:
+                metrics.recordEnqueueToMatch(shard, System.nanoTime() - command.getTimestamp());
+                command.getCountResult().complete(orderBook.cancelAll(command.getTraderId()));
+                break;
+            case AMEND:
+                metrics.recordEnqueueToMatch(shard, System.nanoTime() - command.getTimestamp());
+                boolean amended = orderBook.amend(command.getOrderId(), command.getPrice(), command.getQuantity(),
+                        command.getTimestamp(), trades);
+                dispatchTrades(shard, trades);
+                command.getResult().complete(amended);
+                break;
+            case TASK:
+                command.getTask().run();
+                break;
+        }
+    }
+    
+    // The order may be recycled once matching fills it, so only the book is used afterwards
+    private void processOrder(int shard, OrderBook orderBook, Order order, TradeBuffer trades) {
+        orderBook.submit(order, trades);
+        dispatchTrades(shard, trades);
+    }
+    
+    // Hands trades to the listener dispatchers; listeners never run on the matching thread
+    private void dispatchTrades(int shard, TradeBuffer trades) {
+        TradeDispatcher[] dispatchers = tradeDispatchers;
+        RiskManager risk = riskManager;
+        for (int i = 0; i < trades.size(); i++) {
+            Trade trade = trades.get(i);
+            if (risk != null) {
+                risk.onTrade(trade);
+            }
+            for (TradeDispatcher dispatcher : dispatchers) {
+                dispatcher.publish(shard, trade);
+            }
+        }
+    }
+    
+    // Restores the books of every shard from its latest checkpoint. Call before openJournal() so that
+    // only the journal records after each checkpoint are replayed. Returns the number of orders restored.
+    public long loadCheckpoint(Path directory) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Checkpoints must be loaded before the engine starts");
+        }
+        
+        CheckpointRestorer restorer = new CheckpointRestorer();
+        for (int i = 0; i < shards.length; i++) {
+            checkpointSequences[i] = Checkpoint.load(directory, i, restorer);
+        }
+        for (OrderBook orderBook : allBooks()) {
+            orderBook.publishView();
+        }
+        return restorer.restoredOrders;
+    }
+    
+    private class CheckpointRestorer implements Checkpoint.Loader {
+        private long restoredOrders;
+        
+        @Override
+        public void onBook(String symbol, double tickSize) {
+            registerInstrument(symbol, tickSize);
+            registerSymbol(symbol);
+        }
+        
+        @Override
+        public void onOrder(String symbol, long orderId, String traderId, Order.Side side, long price,
+                            int originalQuantity, int remainingQuantity) {
+            OrderBook orderBook = bookOf(symbol);
+            Order order = orderBook.acquireOrder();
+            order.init(orderId, traderId, orderBook.getSymbol(), side, price, originalQuantity, System.nanoTime());
+            order.setTraderIndex(traders.register(traderId));
+            if (remainingQuantity < originalQuantity) {
+                order.reduceQuantity(originalQuantity - remainingQuantity);
+            }
+            orderBook.addOrder(order);
+            restoredOrders++;
+        }
+        
+        // Loaded before the journal, so replayed fills move positions on from the checkpointed ones
+        @Override
+        public void onPosition(String symbol, String traderId, long position) {
+            RiskManager risk = riskManager;
+            if (risk != null) {
+                risk.restorePosition(traderId, symbol, position);
+            }
+        }
+    }
+    
+    // Each shard copies its books into memory between two commands, which is the only pause
+    // matching sees; the files are written by the checkpoint thread.
+    public CompletableFuture<Void> checkpoint(Path directory) {
+        if (!running) {
+            throw new IllegalStateException("Matching engine is not running");
+        }
+        
+        CompletableFuture<?>[] written = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            MatchingShard shard = shards[i];
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            written[i] = done;
+            shard.execute(() -> {
+                Checkpoint checkpoint;
+                try {
+                    checkpoint = Checkpoint.capture(shard.getIndex(), shard.getJournalSequence(), booksOf(shard),
+                            riskManager);
+                } catch (RuntimeException e) {
+                    done.completeExceptionally(e);
+                    return;
+                }
+                checkpointExecutor.execute(() -> {
+                    try {
+                        checkpoint.writeTo(directory);
+                        done.complete(null);
+                    } catch (IOException e) {
+                        done.completeExceptionally(e);
+                    }
+                });
+            });
+        }
+        return CompletableFuture.allOf(written);
+    }
+    
+    public void scheduleCheckpoints(Path directory, long intervalMillis) {
+        checkpointExecutor.scheduleAtFixedRate(() -> {
+            if (!running) return;
+            checkpoint(directory).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    eventLog.log(EventLog.Level.ERROR, "Error writing checkpoint: {}", e);
+                }
+            });
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private List<OrderBook> booksOf(MatchingShard shard) {
+        OrderBook[] current = books;
+        List<OrderBook> owned = new ArrayList<>();
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] != null && shardOf(i) == shard) {
+                owned.add(current[i]);
+            }
+        }
+        return owned;
+    }
+    
+    // Rebuilds every book from the journal in the directory, then journals all new commands there.
+    // Must be called before start(), with the same shard count and symbol assignments as the run
+    // that wrote the journal. Returns the number of records replayed.
+    public long openJournal(Path directory, int syncBatchSize) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Journal must be opened before the engine starts");
+        }
+        
+        JournalReplayer replayer = new JournalReplayer();
+        long replayed = 0;
+        for (int i = 0; i < shards.length; i++) {
+            replayed += Journal.replay(directory, i, checkpointSequences[i], replayer);
+            shards[i].setJournal(new Journal(directory, i, Journal.DEFAULT_SEGMENT_SIZE, syncBatchSize));
+        }
+        for (OrderBook orderBook : allBooks()) {
+            orderBook.publishView();
+        }
+        if (replayer.failed > 0) {
+            eventLog.log(EventLog.Level.WARN, "Skipped {} journal records that failed to replay", replayer.failed);
+        }
+        Order.advanceIdsPast(replayer.maxOrderId);
+        return replayed;
+    }
+    
+    // Applies journaled commands straight to the books; listeners are not notified of replayed trades.
+    // Orders are re-stamped in replay order so they stay ahead of anything submitted after restart.
+    // A record that fails is logged, counted and skipped, as replay() does, so one bad record does
+    // not abandon the rest of the journal.
+    private class JournalReplayer implements JournalRecordHandler {
+        private final TradeBuffer trades = new TradeBuffer();
+        private long maxOrderId;
+        private long failed;
+        
+        @Override
+        public void onNew(long sequence, long timestamp, long orderId, String symbol, String traderId,
+                          Order.Side side, Order.Type type, long price, int quantity) {
+            maxOrderId = Math.max(maxOrderId, orderId);
+            try {
+                OrderBook orderBook = bookFor(symbol);
+                Order order = orderBook.acquireOrder();
+                order.init(orderId, traderId, orderBook.getSymbol(), side, type, price, quantity, System.nanoTime());
+                order.setTraderIndex(traders.register(traderId));
+                orderBook.submit(order, trades);
+                updateRisk(trades);
+            } catch (RuntimeException e) {
+                fail(sequence, symbol, e);
+            } finally {
+                trades.clear();
+            }
+        }
+        
+        @Override
+        public void onCancel(long sequence, long timestamp, long orderId, String symbol) {
+            OrderBook orderBook = bookOf(symbol);
+            if (orderBook != null) {
+                orderBook.cancelOrder(orderId);
+            }
+        }
+        
+        @Override
+        public void onCancelAll(long sequence, long timestamp, String symbol, String traderId) {
+            OrderBook orderBook = bookOf(symbol);
+            if (orderBook != null) {
+                orderBook.cancelAll(traderId);
+            }
+        }
+        
+        @Override
+        public void onAmend(long sequence, long timestamp, long orderId, String symbol, long price, int quantity) {
+            OrderBook orderBook = bookOf(symbol);
+            if (orderBook == null) return;
+            try {
+                orderBook.amend(orderId, price, quantity, System.nanoTime(), trades);
+                updateRisk(trades);
+            } catch (RuntimeException e) {
+                fail(sequence, symbol, e);
+            } finally {
+                trades.clear();
+            }
+        }
+        
+        private void fail(long sequence, String symbol, RuntimeException e) {
+            failed++;
+            eventLog.log(EventLog.Level.ERROR, "Error replaying journal record {} of {}: {}", sequence, symbol, e);
+        }
+    }
+    
+    // Backtest mode: applies the stream's commands for the symbols the filter accepts (by stream symbol
+    // index) straight to the books on the calling thread, with a virtual clock set to each command's
+    // recorded time, and hands every command's trades to the listener before the next is applied.
+    // Calls covering disjoint symbols may run in parallel. Must be called before start(); returns the
+    // number of commands applied.
+    public long replay(OrderStream stream, IntPredicate symbols, TradeListener listener) {
+        if (running) {
+            throw new IllegalStateException("Replay must run before the engine starts");
+        }
+        
+        VirtualClock clock = new VirtualClock();
+        TradeBuffer trades = new TradeBuffer(clock);
+        OrderBook[] books = new OrderBook[stream.getSymbolCount()]; // By stream symbol index
+        int[] traderIds = new int[stream.getTraderCount()]; // By stream trader index
+        for (int i = 0; i < traderIds.length; i++) {
+            traderIds[i] = traders.register(stream.getTrader(i));
+        }
+        OrderStream.Cursor cursor = stream.cursor();
+        long applied = 0;
+        long maxOrderId = 0;
+        while (cursor.next()) {
+            int symbol = cursor.symbol();
+            if (!symbols.test(symbol)) continue;
+            OrderBook orderBook = books[symbol];
+            if (orderBook == null) {
+                orderBook = bookFor(stream.getSymbol(symbol));
+                books[symbol] = orderBook;
+            }
+            clock.set(cursor.timestamp());
+            try {
+                switch (cursor.kind()) {
+                    case OrderStream.NEW:
+                        Order order = orderBook.acquireOrder();
+                        order.init(cursor.orderId(), stream.getTrader(cursor.trader()), orderBook.getSymbol(),
+                                cursor.side(), cursor.orderType(), cursor.price(), cursor.quantity(), clock.nanoTime());
+                        order.setTraderIndex(traderIds[cursor.trader()]);
+                        orderBook.submit(order, trades);
+                        maxOrderId = Math.max(maxOrderId, cursor.orderId());
+                        break;
+                    case OrderStream.CANCEL:
+                        orderBook.cancelOrder(cursor.orderId());
+                        break;
+                    case OrderStream.CANCEL_ALL:
+                        orderBook.cancelAll(stream.getTrader(cursor.trader()));
+                        break;
+                    case OrderStream.AMEND:
+                        orderBook.amend(cursor.orderId(), cursor.price(), cursor.quantity(), clock.nanoTime(), trades);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown order stream record kind " + cursor.kind());
+                }
+                updateRisk(trades);
+                for (int i = 0; i < trades.size(); i++) {
+                    listener.onTrade(trades.get(i));
+                }
+            } catch (RuntimeException e) {
+                eventLog.log(EventLog.Level.ERROR, "Error replaying order {} of {}: {}", cursor.orderId(),
+                        orderBook.getSymbol(), e);
+            } finally {
+                trades.clear();
+            }
+            orderBook.flushMarketData();
+            applied++;
+        }
+        for (OrderBook orderBook : books) {
+            if (orderBook != null) {
+                orderBook.publishView();
+            }
+        }
+        Order.advanceIdsPast(maxOrderId);
+        return applied;
+    }
+    
+    // Replayed fills still move exposure, so positions survive a restart from the journal
+    private void updateRisk(TradeBuffer trades) {
+        RiskManager risk = riskManager;
+        if (risk == null) return;
+        for (int i = 0; i < trades.size(); i++) {
+            risk.onTrade(trades.get(i));
+        }
+    }
+    
+    // Checks every submitted order before it is queued and tracks exposure from fills. Set before
+    // checkpoints or journals are loaded so that replayed fills count towards positions.
+    // It must be built on this engine's directories, so that ids pass straight through:
+    // new RiskManager(limits, capacity, engine.getSymbolDirectory(), engine.getTraderDirectory())
+    public void setRiskManager(RiskManager riskManager) {
+        if (riskManager != null && !riskManager.uses(symbols, traders)) {
+            throw new IllegalArgumentException("Risk manager does not use this engine's symbol and trader directories");
+        }
+        this.riskManager = riskManager;
+    }
+    
+    public RiskManager getRiskManager() {
+        return riskManager;
+    }
+    
+    private OrderBook newBook(String symbol, int id) {
+        return new OrderBook(getInstrument(symbol), deltaListeners, OrderBook.DEFAULT_SNAPSHOT_DEPTH, offHeapOrders,
+                id);
+    }
+    
+    // Keeps resting orders of every book in direct memory, so heap use does not grow with book depth.
+    // Must be called before any book exists, i.e. before checkpoints, journals or orders.
+    public void setOffHeapOrderStorage(boolean offHeap) {
+        if (!allBooks().isEmpty()) {
+            throw new IllegalStateException("Order storage must be chosen before the first book is created");
+        }
+        this.offHeapOrders = offHeap;
+    }
+    
+    // Must be called before the first order for the symbol is submitted
+    public Instrument registerInstrument(String symbol, double tickSize) {
+        Instrument instrument = new Instrument(symbol, tickSize);
+        Instrument existing = instruments.putIfAbsent(symbol, instrument);
+        if (existing != null && existing.getTickSize() != tickSize) {
+            throw new IllegalStateException("Symbol " + symbol + " already registered with " + existing);
+        }
+        return existing != null ? existing : instrument;
+    }
+    
+    // Symbols that were never registered trade in the default tick size
+    public Instrument getInstrument(String symbol) {
+        return instruments.computeIfAbsent(symbol, s -> new Instrument(s, Instrument.DEFAULT_TICK_SIZE));
+    }
+    
+    // Blocks until the owning shard has applied the cancel
+    public boolean cancelOrder(String symbol, long orderId) {
+        return cancelOrderAsync(symbol, orderId).join();
+    }
+    
+    public CompletableFuture<Boolean> cancelOrderAsync(String symbol, long orderId) {
+        return cancelOrderAsync(symbols.idOf(symbol), orderId);
+    }
+    
+    public CompletableFuture<Boolean> cancelOrderAsync(int symbol, long orderId) {
+        return cancelOrderAsync(-1, symbol, orderId);
+    }
+    
+    // Cancels on behalf of a trader: the shard refuses (completes with false) unless the resting order
+    // belongs to that trader id. A trader of -1 skips the check, as the unchecked overloads do.
+    public CompletableFuture<Boolean> cancelOrderAsync(int trader, int symbol, long orderId) {
+        if (!running) {
+            throw new IllegalStateException("Matching engine is not running");
+        }
+        
+        OrderBook orderBook = book(symbol);
+        if (orderBook == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        shardOf(symbol).submitCancel(orderBook, orderId, trader, result);
+        return result;
+    }
+    
+    // Blocks until every shard has cancelled the trader's resting orders; returns how many there were
+    public int cancelAll(String traderId) {
+        return cancelAllAsync(traderId).join();
+    }
+    
+    public int cancelAll(String traderId, String symbol) {
+        return cancelAllAsync(traderId, symbol).join();
+    }
+    
+    // One CANCEL_ALL command per book, each applied in a single walk of the trader's orders there
+    public CompletableFuture<Integer> cancelAllAsync(String traderId) {
+        if (!running) {
+            throw new IllegalStateException("Matching engine is not running");
+        }
+        
+        OrderBook[] current = books;
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == null) continue;
+            CompletableFuture<Integer> result = new CompletableFuture<>();
+            shardOf(i).submitCancelAll(current[i], traderId, result);
+            results.add(result);
+        }
+        return sum(results);
+    }
+    
+    public CompletableFuture<Integer> cancelAllAsync(String traderId, String symbol) {
+        if (!running) {
+            throw new IllegalStateException("Matching engine is not running");
+        }
+        
+        int id = symbols.idOf(symbol);
+        OrderBook orderBook = book(id);
+        if (orderBook == null) {
+            return CompletableFuture.completedFuture(0);
+        }
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        shardOf(id).submitCancelAll(orderBook, traderId, result);
+        return result;
+    }
+    
+    private static CompletableFuture<Integer> sum(List<CompletableFuture<Integer>> results) {
+        CompletableFuture<Integer> total = CompletableFuture.completedFuture(0);
+        for (CompletableFuture<Integer> result : results) {
+            total = total.thenCombine(result, Integer::sum);
+        }
+        return total;
+    }
+    
+    // Blocks until the owning shard has applied the amend; see OrderBook.amend() for priority rules
+    public boolean amendOrder(String symbol, long orderId, long price, int quantity) {
+        return amendOrderAsync(symbol, orderId, price, quantity).join();
+    }
+    
+    // Atomic cancel/replace: quantity is the new open quantity. Completes with false, leaving the order
+    // untouched, if it is not resting, the price is outside its side's window or the risk manager
+    // rejects the replacement; the risk check runs on the order's shard.
+    public CompletableFuture<Boolean> amendOrderAsync(String symbol, long orderId, long price, int quantity) {
+        if (!running) {
+            throw new IllegalStateException("Matching engine is not running");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Amended quantity must be positive: " + quantity);
+        }
+        
+        int id = symbols.idOf(symbol);
+        OrderBook orderBook = book(id);
+        if (orderBook == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        shardOf(id).submitAmend(orderBook, orderId, price, quantity, result);
+        return result;
+    }
+    
+    public OrderBookSnapshot getOrderBookSnapshot(String symbol) {
+        return getOrderBookSnapshot(symbols.idOf(symbol));
+    }
+    
+    public OrderBookSnapshot getOrderBookSnapshot(int symbol) {
+        OrderBook orderBook = book(symbol);
+        return orderBook != null ? orderBook.getSnapshot() : null;
+    }
+    
+    // Books whose published view has not changed since the last tick are skipped
+    private void distributeMarketData() {
+        boolean refresh = ++marketDataTicks % REFRESH_EVERY_TICKS == 0 && !deltaListeners.isEmpty();
+        for (OrderBook orderBook : allBooks()) {
+            OrderBookSnapshot snapshot = orderBook.getSnapshot();
+            if (lastDistributed.put(orderBook.getSymbol(), snapshot) != snapshot) {
+                notifyMarketDataListeners(snapshot);
+            }
+            if (refresh) {
+                deltaListeners.onRefresh(snapshot);
+            }
+        }
+    }
+    
+    private void notifyMarketDataListeners(OrderBookSnapshot snapshot) {
+        for (MarketDataListener listener : marketDataListeners) {
+            try {
+                listener.onMarketData(snapshot);
+            } catch (Exception e) {
+                eventLog.log(EventLog.Level.ERROR, "Error notifying market data listener: {}", e);
+            }
+        }
+    }
+    
+    // Delivered one trade at a time from the listener's own thread, blocking matching if it falls behind
+    public TradeDispatcher addTradeListener(TradeListener listener) {
+        return addTradeListener((trades, count) -> {
+            for (int i = 0; i < count; i++) {
+                listener.onTrade(trades[i]);
+            }
+        }, DEFAULT_LISTENER_CAPACITY, BackpressurePolicy.BLOCK);
+    }
+    
+    // Each listener gets its own thread and a bounded buffer per shard; the returned dispatcher
+    // exposes its lag, drop and conflation counters
+    public synchronized TradeDispatcher addTradeListener(TradeBatchListener listener, int capacity,
+                                                         BackpressurePolicy policy) {
+        TradeDispatcher[] current = tradeDispatchers;
+        TradeDispatcher dispatcher = new TradeDispatcher("TradeListener-" + current.length, listener,
+                shards.length, capacity, policy, eventLog);
+        TradeDispatcher[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = dispatcher;
+        tradeDispatchers = grown;
+        metrics.setDispatchers(List.of(grown));
+        return dispatcher;
+    }
+    
+    public List<TradeDispatcher> getTradeDispatchers() {
+        return Arrays.asList(tradeDispatchers.clone());
+    }
+    
+    public void addMarketDataListener(MarketDataListener listener) {
+        marketDataListeners.add(listener);
+    }
+    
+    // Level-2 and top-of-book deltas as they happen, plus periodic full refreshes
+    public void addMarketDataDeltaListener(MarketDataDeltaListener listener) {
+        deltaListeners.add(listener);
+    }
+    
+    // Asynchronous log for engine events; callers may log through it too, and setLevel() silences it
+    public EventLog getEventLog() {
+        return eventLog;
+    }
+    
+    // Queue depth, latency histograms and per-symbol counters; rates refresh about once a second
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+    
+    // Exports getMetrics() and one MBean per book to the platform MBean server until stop()
+    public void registerMBeans(String name) throws JMException {
+        metrics.registerMBeans(name);
+    }
+    
+    public Map<String, Integer> getOrderBookSizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        for (OrderBook orderBook : allBooks()) {
+            sizes.put(orderBook.getSymbol(), orderBook.getActiveOrderCount());
+        }
+        return sizes;
+    }
+}
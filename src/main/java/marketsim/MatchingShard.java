@@ -0,0 +1,230 @@
+package marketsim;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Single writer for every book pinned to it: all mutations, including cancels, run on this thread
+public class MatchingShard {
+    private static final int MAX_BATCH = 256;
+    
+    private final int index;
+    private final OrderIngress ingress;
+    private final ExecutorService executor;
+    private final Consumer<OrderCommand> handler;
+    private final List<OrderBook> dirtyBooks; // Shard thread only
+    private final TradeBuffer trades; // Shard thread only, reused for every command
+    private final AtomicLong errors; // Written by the shard thread only
+    private final EventLog log;
+    private Journal journal; // Optional; set before start()
+    private volatile boolean running;
+    
+    @FunctionalInterface
+    public interface CommandProcessor {
+        void process(int shard, OrderCommand command, TradeBuffer trades);
+    }
+    
+    // Runs before a command is journaled. A command it refuses is neither journaled nor processed,
+    // so the validator answers its caller (result future, order status) itself.
+    @FunctionalInterface
+    public interface CommandValidator {
+        boolean validate(int shard, OrderCommand command);
+    }
+    
+    public MatchingShard(int index, OrderIngress ingress, CommandProcessor processor, EventLog log) {
+        this(index, ingress, (shard, command) -> true, processor, log);
+    }
+    
+    public MatchingShard(int index, OrderIngress ingress, CommandValidator validator, CommandProcessor processor,
+                         EventLog log) {
+        this.index = index;
+        this.log = log;
+        this.ingress = ingress;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "MatchingEngine-Thread-" + index);
+            t.setDaemon(true);
+            return t;
+        });
+        this.dirtyBooks = new ArrayList<>();
+        this.trades = new TradeBuffer();
+        this.errors = new AtomicLong();
+        this.handler = command -> {
+            try {
+                if (validator.validate(index, command)) {
+                    if (journal != null) {
+                        journal(command);
+                    }
+                    processor.process(index, command, trades);
+                }
+            } catch (Exception e) {
+                errors.lazySet(errors.get() + 1);
+                LogEvent event = log.claim(EventLog.Level.ERROR, "Error processing {} on shard {}: {}");
+                if (event != null) {
+                    log.publish(event.add(command.getType()).add(index).add(e));
+                }
+                if (command.getResult() != null) {
+                    command.getResult().completeExceptionally(e);
+                }
+                if (command.getCountResult() != null) {
+                    command.getCountResult().completeExceptionally(e);
+                }
+            } finally {
+                trades.clear();
+            }
+            OrderBook book = command.getBook();
+            if (book != null) {
+                book.flushMarketData();
+                if (book.markDirty()) {
+                    dirtyBooks.add(book);
+                }
+            }
+        };
+        this.running = false;
+    }
+    
+    public void start() {
+        if (running) return;
+        running = true;
+        
+        // Every command for the symbols pinned to this shard is processed here, in arrival order
+        executor.submit(() -> {
+            while (running) {
+                try {
+                    if (ingress.drain(handler, MAX_BATCH) > 0) {
+                        if (journal != null) {
+                            journal.sync(false);
+                        }
+                        publishViews();
+                    } else if (journal != null) {
+                        journal.sync(true);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        });
+    }
+    
+    // Write-ahead: a command that cannot be journaled is not processed
+    private void journal(OrderCommand command) throws IOException {
+        if (command.getType() == OrderCommand.Type.TASK) return;
+        String symbol = command.getBook().getSymbol();
+        switch (command.getType()) {
+            case NEW:
+                Order order = command.getOrder();
+                if (order != null) {
+                    journal.appendNew(order.getTimestamp(), order.getOrderId(), symbol, order.getTraderId(),
+                            order.getSide(), order.getType(), order.getPrice(), order.getOriginalQuantity());
+                } else {
+                    journal.appendNew(command.getTimestamp(), command.getOrderId(), symbol, command.getTraderId(),
+                            command.getSide(), command.getOrderType(), command.getPrice(), command.getQuantity());
+                }
+                break;
+            case CANCEL:
+                journal.appendCancel(command.getTimestamp(), command.getOrderId(), symbol);
+                break;
+            case BATCH:
+                // Journaled order by order, so replay needs nothing beyond NEW records; orders the
+                // validator refused are left out
+                for (Order batched : command.getOrders()) {
+                    if (batched.getStatus() == Order.Status.CANCELLED) continue;
+                    journal.appendNew(batched.getTimestamp(), batched.getOrderId(), symbol, batched.getTraderId(),
+                            batched.getSide(), batched.getType(), batched.getPrice(), batched.getOriginalQuantity());
+                }
+                break;
+            case CANCEL_ALL:
+                journal.appendCancelAll(command.getTimestamp(), symbol, command.getTraderId());
+                break;
+            case AMEND:
+                journal.appendAmend(command.getTimestamp(), command.getOrderId(), symbol, command.getPrice(),
+                        command.getQuantity());
+                break;
+            default:
+                break;
+        }
+    }
+    
+    // Readers see each touched book once per batch instead of once per command
+    private void publishViews() {
+        for (int i = 0; i < dirtyBooks.size(); i++) {
+            dirtyBooks.get(i).publishView();
+        }
+        dirtyBooks.clear();
+    }
+    
+    public void shutdown() {
+        running = false;
+        executor.shutdown();
+    }
+    
+    public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!executor.awaitTermination(timeout, unit)) {
+            executor.shutdownNow();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+    
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+    
+    public void submitNew(OrderBook book, Order order) {
+        OrderCommand command = ingress.claim();
+        command.setNew(book, order, System.nanoTime());
+        ingress.publish(command);
+    }
+    
+    public void submitNew(OrderBook book, long orderId, int trader, String traderId, Order.Side side,
+                          Order.Type type, long price, int quantity) {
+        OrderCommand command = ingress.claim();
+        command.setNew(book, orderId, trader, traderId, side, type, price, quantity, System.nanoTime());
+        ingress.publish(command);
+    }
+    
+    // Runs the task on this shard's thread after every command already queued
+    public void execute(Runnable task) {
+        OrderCommand command = ingress.claim();
+        command.setTask(task);
+        ingress.publish(command);
+    }
+    
+    // Shard thread: sequence of the last journaled command, 0 when not journaling
+    public long getJournalSequence() {
+        return journal != null ? journal.getSequence() : 0;
+    }
+    
+    public void submitCancel(OrderBook book, long orderId, int trader, CompletableFuture<Boolean> result) {
+        OrderCommand command = ingress.claim();
+        command.setCancel(book, orderId, trader, result, System.nanoTime());
+        ingress.publish(command);
+    }
+    
+    // One command for all the orders; they are applied back to back, with no other command between
+    public void submitBatch(OrderBook book, Order[] orders, CompletableFuture<Integer> result) {
+        OrderCommand command = ingress.claim();
+        command.setBatch(book, orders, result, System.nanoTime());
+        ingress.publish(command);
+    }
+    
+    public void submitCancelAll(OrderBook book, String traderId, CompletableFuture<Integer> result) {
+        OrderCommand command = ingress.claim();
+        command.setCancelAll(book, traderId, result, System.nanoTime());
+        ingress.publish(command);
+    }
+    
+    public void submitAmend(OrderBook book, long orderId, long price, int quantity, CompletableFuture<Boolean> result) {
+        OrderCommand command = ingress.claim();
+        command.setAmend(book, orderId, price, quantity, result, System.nanoTime());
+        ingress.publish(command);
+    }
+    
+    public int getIndex() { return index; }
+    public int getQueueDepth() { return ingress.size(); }
+    public long getErrorCount() { return errors.get(); }
+}
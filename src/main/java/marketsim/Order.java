@@ -0,0 +1,137 @@
+package marketsim;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Order implements Comparable<Order> {
+    public enum Side {
+        BUY, SELL
+    }
+    
+    public enum Type {
+        LIMIT,     // Rests whatever does not fill
+        MARKET,    // Fills at any price; the remainder is cancelled
+        IOC,       // Immediate-or-cancel: fills up to its limit; the remainder is cancelled
+        FOK,       // Fill-or-kill: fills completely up to its limit, or is cancelled untouched
+        POST_ONLY  // Rests only; cancelled if it would take liquidity on arrival
+    }
+    
+    public enum Status {
+        PENDING, PARTIALLY_FILLED, FILLED, CANCELLED
+    }
+    
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+    
+    // Not final so that pooled instances can be re-initialised in place
+    private long orderId;
+    private String traderId;
+    private String symbol;
+    private Side side;
+    private Type type;
+    private long price; // In ticks of the symbol's Instrument
+    private int originalQuantity;
+    private int remainingQuantity;
+    private long timestamp; // System.nanoTime() at submission
+    private Status status;
+    private int traderIndex; // Engine trader directory id; -1 outside an engine
+    
+    // Set for orders taken from an OrderPool; they are recycled once the book is done with them
+    boolean pooled;
+    
+    public Order(String traderId, String symbol, Side side, long price, int quantity) {
+        this(traderId, symbol, side, Type.LIMIT, price, quantity);
+    }
+    
+    // price is ignored for MARKET orders
+    public Order(String traderId, String symbol, Side side, Type type, long price, int quantity) {
+        init(nextId(), traderId, symbol, side, type, price, quantity, System.nanoTime());
+    }
+    
+    Order() {
+    }
+    
+    void init(long orderId, String traderId, String symbol, Side side, long price, int quantity, long timestamp) {
+        init(orderId, traderId, symbol, side, Type.LIMIT, price, quantity, timestamp);
+    }
+    
+    void init(long orderId, String traderId, String symbol, Side side, Type type, long price, int quantity,
+              long timestamp) {
+        this.orderId = orderId;
+        this.traderId = traderId;
+        this.symbol = symbol;
+        this.side = side;
+        this.type = type;
+        this.price = price;
+        this.originalQuantity = quantity;
+        this.remainingQuantity = quantity;
+        this.timestamp = timestamp;
+        this.status = Status.PENDING;
+        this.traderIndex = -1;
+    }
+    
+    // Sequence-based ids: one atomic increment, no SecureRandom
+    public static long nextId() {
+        return NEXT_ID.getAndIncrement();
+    }
+    
+    public static long peekNextId() {
+        return NEXT_ID.get();
+    }
+    
+    // After recovery, keeps new ids clear of the ones already in use
+    public static void advanceIdsPast(long orderId) {
+        NEXT_ID.accumulateAndGet(orderId + 1, Math::max);
+    }
+    
+    // Detached copy that is safe to hand to other threads
+    public Order copy() {
+        Order copy = new Order();
+        copy.init(orderId, traderId, symbol, side, type, price, originalQuantity, timestamp);
+        copy.remainingQuantity = remainingQuantity;
+        copy.status = status;
+        copy.traderIndex = traderIndex;
+        return copy;
+    }
+    
+    @Override
+    public int compareTo(Order other) {
+        // For buy orders: higher price has priority, than earlier timestamp
+        // For sell orders: lower price has priority, than earlier timestamp
+        if (this.side == Side.BUY) {
+            int priceCompare = Long.compare(other.price, this.price);
+            return priceCompare != 0 ? priceCompare : Long.compare(this.timestamp, other.timestamp);
+        } else {
+            int priceCompare = Long.compare(this.price, other.price);
+            return priceCompare != 0 ? priceCompare : Long.compare(this.timestamp, other.timestamp);
+        }
+    }
+    
+    public void reduceQuantity(int quantity) {
+        this.remainingQuantity -= quantity;
+        if (this.remainingQuantity <= 0) {
+            this.status = Status.FILLED;
+        } else {
+            this.status = Status.PARTIALLY_FILLED;
+        }
+    }
+    
+    public long getOrderId() { return orderId; }
+    public String getTraderId() { return traderId; }
+    public String getSymbol() { return symbol; }
+    public Side getSide() { return side; }
+    public Type getType() { return type; }
+    public long getPrice() { return price; }
+    public int getOriginalQuantity() { return originalQuantity; }
+    public int getRemainingQuantity() { return remainingQuantity; }
+    public long getTimestamp() { return timestamp; }
+    public Status getStatus() { return status; }
+    public int getTraderIndex() { return traderIndex; }
+    
+    public void setStatus(Status status) { this.status = status; }
+    void setTraderIndex(int traderIndex) { this.traderIndex = traderIndex; }
+    
+    @Override
+    public String toString() {
+        return String.format("Order{id=%d, trader='%s', symbol='%s', side=%s, type=%s, price=%d, qty=%d/%d, status=%s}",
+                orderId, traderId, symbol, side, type, price, remainingQuantity, originalQuantity, status);
+    }
+}
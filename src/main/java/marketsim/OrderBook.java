@@ -0,0 +1,576 @@
+package marketsim;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Not thread-safe: every mutation must come from the owning matching shard's thread.
+// Other threads read the immutable view the owner publishes with publishView().
+public class OrderBook {
+    public static final int DEFAULT_SNAPSHOT_DEPTH = 10;
+    private static final int INITIAL_CAPACITY = 1024; // Orders the store, index and pool start out sized for
+
+    private final Instrument instrument;
+    private final String symbol;
+    private final int symbolIndex; // Engine symbol directory id, or -1
+    private final BookSide bids; // Bids - highest price first
+    private final BookSide asks; // Asks - lowest price first
+    private final OrderStore store; // Resting orders
+    private final LongIntHashMap activeOrders; // orderId -> slot of the resting order in the store
+    private final OrderPool orderPool; // Incoming orders while they are matched
+    private final MarketDataDeltaListener deltaListener; // May be null
+    private final int snapshotDepth;
+    private final Order visitor; // Scratch view handed to forEachRestingOrder callbacks
+    private PriceLevel[] changedLevels; // Levels touched by the current command
+    private int changedCount;
+    private long marketDataSequence;
+    private long lastBidPrice, lastBidQuantity, lastAskPrice, lastAskQuantity; // Last top of book sent
+    private long version; // Bumped on every mutation
+    private long publishedVersion;
+    private boolean dirty;
+    private volatile OrderBookSnapshot view;
+    private volatile int publishedOrderCount;
+    private volatile int publishedBidLevels;
+    private volatile int publishedAskLevels;
+    private volatile int publishedFreeRecords;
+    private volatile long bidWindowLow = Long.MIN_VALUE, bidWindowHigh = Long.MAX_VALUE;
+    private volatile long askWindowLow = Long.MIN_VALUE, askWindowHigh = Long.MAX_VALUE;
+    // Single-writer counters: written by the owner thread with lazySet, readable from any thread
+    private final AtomicLong ordersReceived = new AtomicLong();
+    private final AtomicLong tradesExecuted = new AtomicLong();
+    private final AtomicLong cancelsApplied = new AtomicLong();
+
+    public OrderBook(Instrument instrument) {
+        this(instrument, null);
+    }
+
+    public OrderBook(Instrument instrument, MarketDataDeltaListener deltaListener) {
+        this(instrument, deltaListener, DEFAULT_SNAPSHOT_DEPTH);
+    }
+
+    public OrderBook(Instrument instrument, MarketDataDeltaListener deltaListener, int snapshotDepth) {
+        this(instrument, deltaListener, snapshotDepth, false);
+    }
+
+    // snapshotDepth bounds how many price levels per side the published view carries; offHeap keeps
+    // resting orders and the orderId index in direct memory instead of heap arrays
+    public OrderBook(Instrument instrument, MarketDataDeltaListener deltaListener, int snapshotDepth,
+                     boolean offHeap) {
+        this(instrument, deltaListener, snapshotDepth, offHeap, -1);
+    }
+
+    // symbolIndex is the symbol's id in the owning engine's directory, stamped on every trade
+    public OrderBook(Instrument instrument, MarketDataDeltaListener deltaListener, int snapshotDepth,
+                     boolean offHeap, int symbolIndex) {
+        this.instrument = instrument;
+        this.symbol = instrument.getSymbol();
+        this.symbolIndex = symbolIndex;
+        this.store = new OrderStore(INITIAL_CAPACITY, offHeap);
+        this.bids = new BookSide(Order.Side.BUY, store);
+        this.asks = new BookSide(Order.Side.SELL, store);
+        this.activeOrders = new LongIntHashMap(INITIAL_CAPACITY, offHeap);
+        this.orderPool = new OrderPool(INITIAL_CAPACITY);
+        this.visitor = new Order();
+        this.deltaListener = deltaListener;
+        this.snapshotDepth = snapshotDepth;
+        this.changedLevels = new PriceLevel[16];
+        this.view = OrderBookSnapshot.empty(symbol);
+    }
+
+    // Rests the order without matching it; only for orders known not to cross, such as restored ones.
+    // The book keeps its own copy, so a caller-built Order is not updated by later fills. The price
+    // is checked against the side's window before anything is stored, so a refused order leaves no trace.
+    public void addOrder(Order order) {
+        BookSide side = sideOf(order);
+        if (!side.accepts(order.getPrice())) {
+            orderPool.release(order);
+            throw new IllegalArgumentException("Price " + order.getPrice() + " of order " + order.getOrderId()
+                    + " is outside the " + order.getSide() + " price window of " + symbol);
+        }
+        int slot = store.add(order);
+        markChanged(side.add(slot));
+        activeOrders.put(order.getOrderId(), slot);
+        orderPool.release(order);
+        version++;
+    }
+
+    public boolean cancelOrder(long orderId) {
+        int slot = activeOrders.get(orderId);
+        if (slot == LongIntHashMap.MISSING) {
+            return false;
+        }
+        if (store.status(slot) == Order.Status.PENDING) {
+            remove(slot);
+            version++;
+            cancelsApplied.lazySet(cancelsApplied.get() + 1);
+            return true;
+        }
+        return false;
+    }
+
+    // Owner thread: mass cancel of every resting order of the trader, partially filled ones included.
+    // Walks the trader's own chain in the store, so the cost is the trader's order count, not the
+    // book's depth. Returns the number cancelled.
+    public int cancelAll(String traderId) {
+        int count = 0;
+        int slot = store.firstOfTrader(traderId);
+        while (slot != OrderStore.NONE) {
+            int next = store.nextOfTrader(slot);
+            remove(slot);
+            slot = next;
+            count++;
+        }
+        if (count > 0) {
+            version++;
+            cancelsApplied.lazySet(cancelsApplied.get() + count);
+        }
+        return count;
+    }
+
+    // Owner thread: atomic cancel/replace of a resting order, keeping its id; quantity is the new
+    // open quantity. Reducing it at the same price amends in place and keeps time priority. Any
+    // other change loses priority: the order leaves the book and re-enters as a LIMIT aggressor at
+    // the new price, so it may trade, with its trades appended to the buffer. Returns false if the
+    // order is not resting.
+    public boolean amend(long orderId, long price, int quantity, long timestamp, TradeBuffer trades) {
+        int slot = activeOrders.get(orderId);
+        if (slot == LongIntHashMap.MISSING) {
+            return false;
+        }
+        // Refused before anything is removed, so a failed amend leaves the order resting as it was
+        if (quantity <= 0 || !(store.side(slot) == Order.Side.BUY ? bids : asks).accepts(price)) {
+            return false;
+        }
+        int remaining = store.remainingQuantity(slot);
+        if (price == store.price(slot) && quantity <= remaining) {
+            PriceLevel level = (store.side(slot) == Order.Side.BUY ? bids : asks).levelOf(slot);
+            markChanged(level);
+            level.reduceQuantity(remaining - quantity);
+            store.setRemainingQuantity(slot, quantity);
+            version++;
+            return true;
+        }
+        Order order = orderPool.acquire();
+        order.init(orderId, store.traderId(slot), symbol, store.side(slot), Order.Type.LIMIT, price, quantity,
+                timestamp);
+        order.setTraderIndex(store.traderIndex(slot));
+        remove(slot);
+        version++;
+        submit(order, trades);
+        return true;
+    }
+
+    // Owner thread: a resting order copied into a scratch instance that the next call (or
+    // forEachRestingOrder) overwrites; null if there is none with this id
+    public Order findOrder(long orderId) {
+        int slot = activeOrders.get(orderId);
+        if (slot == LongIntHashMap.MISSING) {
+            return null;
+        }
+        store.copyTo(slot, symbol, visitor);
+        return visitor;
+    }
+
+    // Owner thread: trader directory id of a resting order, -1 if there is none with this id
+    public int traderIndexOf(long orderId) {
+        int slot = activeOrders.get(orderId);
+        return slot == LongIntHashMap.MISSING ? -1 : store.traderIndex(slot);
+    }
+
+    // Unlinks a resting order from its level, the index and the store
+    private void remove(int slot) {
+        activeOrders.remove(store.orderId(slot));
+        BookSide side = store.side(slot) == Order.Side.BUY ? bids : asks;
+        PriceLevel level = side.levelOf(slot);
+        markChanged(level);
+        side.remove(level, slot);
+        store.free(slot);
+    }
+
+    // Owner thread: applies a new order according to its type, appending any trades to the buffer,
+    // and returns how many were added. The incoming order is always the aggressor: it is matched
+    // against the opposite side before it could rest, so the book is never crossed and the work is
+    // proportional to the fills. Only a LIMIT residual or a POST_ONLY order ends up resting.
+    public int submit(Order order, TradeBuffer trades) {
+        ordersReceived.lazySet(ordersReceived.get() + 1);
+        int before = trades.size();
+        int count = apply(order, trades);
+        if (trades.size() > before) {
+            tradesExecuted.lazySet(tradesExecuted.get() + trades.size() - before);
+        }
+        return count;
+    }
+
+    private int apply(Order order, TradeBuffer trades) {
+        if (!fitsWindow(order)) {
+            reject(order);
+            return 0;
+        }
+        switch (order.getType()) {
+            case POST_ONLY:
+                if (crossesBest(order)) {
+                    reject(order);
+                    return 0;
+                }
+                addOrder(order);
+                return 0;
+            case FOK:
+                if (!canFill(order)) {
+                    reject(order);
+                    return 0;
+                }
+                // Fully fillable from here on, so it is taken like an IOC
+                return takeOrCancel(order, trades);
+            case IOC:
+            case MARKET:
+                return takeOrCancel(order, trades);
+            default:
+                int matched = take(order, trades);
+                if (order.getRemainingQuantity() > 0) {
+                    addOrder(order);
+                } else {
+                    orderPool.release(order);
+                }
+                return matched;
+        }
+    }
+
+    // Matches what it can and cancels the rest, for order types that never rest
+    private int takeOrCancel(Order order, TradeBuffer trades) {
+        int count = take(order, trades);
+        if (order.getRemainingQuantity() > 0) {
+            reject(order);
+        } else {
+            orderPool.release(order);
+        }
+        return count;
+    }
+
+    // Only LIMIT and POST_ONLY orders can rest, so only their price has to fit the side's window
+    private boolean fitsWindow(Order order) {
+        return accepts(order.getSide(), order.getType(), order.getPrice());
+    }
+
+    // Owner thread: the exact form of isPriceInWindow(), for checks made before a command is applied
+    public boolean accepts(Order.Side side, Order.Type type, long price) {
+        if (type != Order.Type.LIMIT && type != Order.Type.POST_ONLY) return true;
+        return (side == Order.Side.BUY ? bids : asks).accepts(price);
+    }
+
+    // Owner thread: accepts() for each order of a batch in turn, as if the earlier ones had rested and
+    // widened their side's window; refused orders are marked CANCELLED. Windows start wider than the
+    // prices that opened them, so this may pass an order the book then rejects, never the reverse.
+    public void refuseOutOfWindow(Order[] orders) {
+        long bidLow = bids.getWindowLow();
+        long bidHigh = bids.getWindowHigh();
+        long askLow = asks.getWindowLow();
+        long askHigh = asks.getWindowHigh();
+        for (Order order : orders) {
+            Order.Type type = order.getType();
+            if (type != Order.Type.LIMIT && type != Order.Type.POST_ONLY) continue;
+            boolean buy = order.getSide() == Order.Side.BUY;
+            long low = buy ? bidLow : askLow;
+            long high = buy ? bidHigh : askHigh;
+            long price = order.getPrice();
+            if (low == Long.MIN_VALUE) {
+                low = price;
+                high = price;
+            } else if (BookSide.fits(low, high, price)) {
+                low = Math.min(low, price);
+                high = Math.max(high, price);
+            } else {
+                order.setStatus(Order.Status.CANCELLED);
+                continue;
+            }
+            if (buy) {
+                bidLow = low;
+                bidHigh = high;
+            } else {
+                askLow = low;
+                askHigh = high;
+            }
+        }
+    }
+
+    // Safe from any thread: false if a LIMIT or POST_ONLY order at this price could not rest, as of
+    // the last published view. Windows only widen, so a stale answer may accept a price the owner
+    // then rejects, but never rejects one the owner would accept.
+    public boolean isPriceInWindow(Order.Side side, Order.Type type, long price) {
+        if (type != Order.Type.LIMIT && type != Order.Type.POST_ONLY) return true;
+        long low = side == Order.Side.BUY ? bidWindowLow : askWindowLow;
+        long high = side == Order.Side.BUY ? bidWindowHigh : askWindowHigh;
+        return low == Long.MIN_VALUE || BookSide.fits(low, high, price);
+    }
+
+    private boolean crossesBest(Order order) {
+        PriceLevel best = oppositeOf(order).getBestLevel();
+        return best != null && crosses(order, best);
+    }
+
+    private static boolean crosses(Order order, PriceLevel level) {
+        if (order.getType() == Order.Type.MARKET) return true;
+        return order.getSide() == Order.Side.BUY
+               ? level.getPrice() <= order.getPrice()
+               : level.getPrice() >= order.getPrice();
+    }
+
+    // Read-only walk over the aggregated opposite levels within the order's limit
+    private boolean canFill(Order order) {
+        BookSide opposite = oppositeOf(order);
+        long available = 0;
+        for (PriceLevel level = opposite.getBestLevel(); level != null && crosses(order, level);
+             level = opposite.worseThan(level)) {
+            available += level.getTotalQuantity();
+            if (available >= order.getRemainingQuantity()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Matches an order that is not in the book against the opposite side in price-time priority.
+    // Trades print at the passive (resting) order's price.
+    private int take(Order order, TradeBuffer trades) {
+        BookSide opposite = oppositeOf(order);
+        boolean buy = order.getSide() == Order.Side.BUY;
+        int count = 0;
+        PriceLevel level;
+        while (order.getRemainingQuantity() > 0 && (level = opposite.getBestLevel()) != null
+                && crosses(order, level)) {
+            int resting = level.getHead();
+            int tradeQuantity = Math.min(order.getRemainingQuantity(), store.remainingQuantity(resting));
+            trades.add(
+                buy ? order.getOrderId() : store.orderId(resting),
+                buy ? store.orderId(resting) : order.getOrderId(),
+                buy ? order.getTraderId() : store.traderId(resting),
+                buy ? store.traderId(resting) : order.getTraderId(),
+                symbol,
+                level.getPrice(),
+                tradeQuantity
+            ).setIndexes(
+                symbolIndex,
+                buy ? order.getTraderIndex() : store.traderIndex(resting),
+                buy ? store.traderIndex(resting) : order.getTraderIndex()
+            );
+            count++;
+            order.reduceQuantity(tradeQuantity);
+            fill(opposite, level, resting, tradeQuantity);
+        }
+        if (count > 0) {
+            version++;
+        }
+        return count;
+    }
+
+    // The order never rested, so it only has to go back to the pool
+    private void reject(Order order) {
+        order.setStatus(Order.Status.CANCELLED);
+        orderPool.release(order);
+    }
+
+    private void fill(BookSide side, PriceLevel level, int slot, int quantity) {
+        markChanged(level);
+        level.reduceQuantity(quantity);
+        store.reduceQuantity(slot, quantity);
+
+        // Remove filled orders
+        if (store.remainingQuantity(slot) == 0) {
+            activeOrders.remove(store.orderId(slot));
+            side.remove(level, slot);
+            store.free(slot);
+        }
+    }
+
+    private void markChanged(PriceLevel level) {
+        if (deltaListener == null || level.changed) return;
+        if (changedCount == changedLevels.length) {
+            changedLevels = Arrays.copyOf(changedLevels, changedCount * 2);
+        }
+        level.changed = true;
+        changedLevels[changedCount++] = level;
+    }
+
+    // Owner thread, once per command: emits the final state of every level the command touched,
+    // then the top of book if it moved. Intermediate states (e.g. a crossed book) are never sent.
+    public void flushMarketData() {
+        if (deltaListener == null) return;
+        for (int i = 0; i < changedCount; i++) {
+            PriceLevel level = changedLevels[i];
+            level.changed = false;
+            changedLevels[i] = null;
+            deltaListener.onLevelUpdate(symbol, ++marketDataSequence, level.getSide(), level.getPrice(),
+                    level.getTotalQuantity(), level.getOrderCount());
+        }
+        changedCount = 0;
+
+        PriceLevel bestBid = bids.getBestLevel();
+        PriceLevel bestAsk = asks.getBestLevel();
+        long bidPrice = bestBid == null ? 0 : bestBid.getPrice();
+        long bidQuantity = bestBid == null ? 0 : bestBid.getTotalQuantity();
+        long askPrice = bestAsk == null ? 0 : bestAsk.getPrice();
+        long askQuantity = bestAsk == null ? 0 : bestAsk.getTotalQuantity();
+        if (bidPrice != lastBidPrice || bidQuantity != lastBidQuantity
+                || askPrice != lastAskPrice || askQuantity != lastAskQuantity) {
+            lastBidPrice = bidPrice;
+            lastBidQuantity = bidQuantity;
+            lastAskPrice = askPrice;
+            lastAskQuantity = askQuantity;
+            deltaListener.onTopOfBook(symbol, ++marketDataSequence, bidPrice, bidQuantity, askPrice, askQuantity);
+        }
+    }
+
+    private BookSide sideOf(Order order) {
+        return order.getSide() == Order.Side.BUY ? bids : asks;
+    }
+
+    private BookSide oppositeOf(Order order) {
+        return order.getSide() == Order.Side.BUY ? asks : bids;
+    }
+
+    // Owner thread: visits resting orders in priority order, bids then asks. The Order passed to the
+    // action is one reused view of the stored record; copy() it to keep it.
+    public void forEachRestingOrder(Consumer<Order> action) {
+        forEachRestingOrder(bids, action);
+        forEachRestingOrder(asks, action);
+    }
+
+    private void forEachRestingOrder(BookSide side, Consumer<Order> action) {
+        for (PriceLevel level = side.getBestLevel(); level != null; level = side.worseThan(level)) {
+            for (int slot = level.getHead(); slot != OrderStore.NONE; slot = store.next(slot)) {
+                store.copyTo(slot, symbol, visitor);
+                action.accept(visitor);
+            }
+        }
+    }
+
+    // Owner thread: recycled Order for a new submission; returned to the pool when it leaves the book
+    public Order acquireOrder() {
+        return orderPool.acquire();
+    }
+
+    // Owner thread: returns true the first time the book changes after its last published view
+    public boolean markDirty() {
+        if (dirty || version == publishedVersion) return false;
+        dirty = true;
+        return true;
+    }
+
+    // Owner thread: publishes an immutable view of the current state for other threads.
+    // The view is only rebuilt when the version moved, so an unchanged book costs nothing.
+    public void publishView() {
+        if (version != publishedVersion) {
+            view = buildSnapshot();
+            publishedOrderCount = activeOrders.size();
+            publishedBidLevels = bids.getLevelCount();
+            publishedAskLevels = asks.getLevelCount();
+            publishedFreeRecords = store.getFreeCount();
+            bidWindowLow = bids.getWindowLow();
+            bidWindowHigh = bids.getWindowHigh();
+            askWindowLow = asks.getWindowLow();
+            askWindowHigh = asks.getWindowHigh();
+            publishedVersion = version;
+        }
+        dirty = false;
+    }
+
+    // Safe from any thread; reflects the book as of the owner's last published view
+    public OrderBookSnapshot getSnapshot() {
+        return view;
+    }
+
+    // Aggregates the top snapshotDepth levels of each side, best price first
+    private OrderBookSnapshot buildSnapshot() {
+        int bidDepth = Math.min(snapshotDepth, bids.getLevelCount());
+        long[] bidPrices = new long[bidDepth];
+        long[] bidQuantities = new long[bidDepth];
+        int[] bidOrderCounts = new int[bidDepth];
+        PriceLevel level = bids.getBestLevel();
+        for (int i = 0; i < bidDepth; i++, level = bids.worseThan(level)) {
+            bidPrices[i] = level.getPrice();
+            bidQuantities[i] = level.getTotalQuantity();
+            bidOrderCounts[i] = level.getOrderCount();
+        }
+
+        int askDepth = Math.min(snapshotDepth, asks.getLevelCount());
+        long[] askPrices = new long[askDepth];
+        long[] askQuantities = new long[askDepth];
+        int[] askOrderCounts = new int[askDepth];
+        level = asks.getBestLevel();
+        for (int i = 0; i < askDepth; i++, level = asks.worseThan(level)) {
+            askPrices[i] = level.getPrice();
+            askQuantities[i] = level.getTotalQuantity();
+            askOrderCounts[i] = level.getOrderCount();
+        }
+
+        return new OrderBookSnapshot(symbol, bidPrices, bidQuantities, bidOrderCounts,
+                askPrices, askQuantities, askOrderCounts, marketDataSequence);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getSymbolIndex() {
+        return symbolIndex;
+    }
+
+    public Instrument getInstrument() {
+        return instrument;
+    }
+
+    // Owner thread: bytes of the orderId index; see LongIntHashMap.footprintBytes(int) for a given
+    // number of orders
+    public long getIndexFootprintBytes() {
+        return activeOrders.footprintBytes();
+    }
+
+    // Owner thread: bytes reserved for resting order records; this and the index are off the heap
+    // when isOffHeap()
+    public long getStoreFootprintBytes() {
+        return store.footprintBytes();
+    }
+
+    // Bytes the index and store of a book settle at once this many orders have rested at a time:
+    // 83,886,080 (~84 B per order) at a million, whether on or off the heap
+    public static long footprintBytes(int restingOrders) {
+        return LongIntHashMap.footprintBytes(Math.max(restingOrders, INITIAL_CAPACITY))
+                + OrderStore.footprintBytes(INITIAL_CAPACITY, restingOrders);
+    }
+
+    public boolean isOffHeap() {
+        return store.isOffHeap();
+    }
+
+    // Safe from any thread; reflects the book as of the owner's last published view
+    public int getActiveOrderCount() {
+        return publishedOrderCount;
+    }
+
+    // Safe from any thread; reflects the book as of the owner's last published view
+    public int getBidLevelCount() {
+        return publishedBidLevels;
+    }
+
+    public int getAskLevelCount() {
+        return publishedAskLevels;
+    }
+
+    // Freed order records waiting to be reused. Cancels and fills unlink in place and the index
+    // deletes without tombstones, so this is all the dead space a book carries.
+    public int getFreeRecordCount() {
+        return publishedFreeRecords;
+    }
+
+    // Safe from any thread: running totals since the book was created
+    public long getOrdersReceived() {
+        return ordersReceived.get();
+    }
+
+    public long getTradesExecuted() {
+        return tradesExecuted.get();
+    }
+
+    public long getCancelsApplied() {
+        return cancelsApplied.get();
+    }
+}
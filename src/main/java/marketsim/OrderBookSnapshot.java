@@ -0,0 +1,69 @@
+package marketsim;
+
+// Immutable view of the top price levels of a book, aggregated per price. Prices are in ticks.
+public class OrderBookSnapshot {
+    private final String symbol;
+    private final long[] bidPrices;
+    private final long[] bidQuantities;
+    private final int[] bidOrderCounts;
+    private final long[] askPrices;
+    private final long[] askQuantities;
+    private final int[] askOrderCounts;
+    private final long sequence; // Last market data delta sequence reflected in this snapshot
+    
+    public OrderBookSnapshot(String symbol, long[] bidPrices, long[] bidQuantities, int[] bidOrderCounts,
+                             long[] askPrices, long[] askQuantities, int[] askOrderCounts, long sequence) {
+        this.symbol = symbol;
+        this.bidPrices = bidPrices;
+        this.bidQuantities = bidQuantities;
+        this.bidOrderCounts = bidOrderCounts;
+        this.askPrices = askPrices;
+        this.askQuantities = askQuantities;
+        this.askOrderCounts = askOrderCounts;
+        this.sequence = sequence;
+    }
+    
+    public static OrderBookSnapshot empty(String symbol) {
+        return new OrderBookSnapshot(symbol, new long[0], new long[0], new int[0],
+                new long[0], new long[0], new int[0], 0);
+    }
+    
+    public String getSymbol() { return symbol; }
+    public long getSequence() { return sequence; }
+    
+    // Levels are indexed from the best price outwards
+    public int getBidDepth() { return bidPrices.length; }
+    public long getBidPrice(int level) { return bidPrices[level]; }
+    public long getBidQuantity(int level) { return bidQuantities[level]; }
+    public int getBidOrderCount(int level) { return bidOrderCounts[level]; }
+    
+    public int getAskDepth() { return askPrices.length; }
+    public long getAskPrice(int level) { return askPrices[level]; }
+    public long getAskQuantity(int level) { return askQuantities[level]; }
+    public int getAskOrderCount(int level) { return askOrderCounts[level]; }
+    
+    // Array accessors return copies so the snapshot stays immutable
+    public long[] getBidPrices() { return bidPrices.clone(); }
+    public long[] getBidQuantities() { return bidQuantities.clone(); }
+    public int[] getBidOrderCounts() { return bidOrderCounts.clone(); }
+    public long[] getAskPrices() { return askPrices.clone(); }
+    public long[] getAskQuantities() { return askQuantities.clone(); }
+    public int[] getAskOrderCounts() { return askOrderCounts.clone(); }
+    
+    public boolean isEmpty() {
+        return bidPrices.length == 0 && askPrices.length == 0;
+    }
+    
+    public long getBestBidPrice() {
+        return bidPrices.length == 0 ? 0 : bidPrices[0];
+    }
+    
+    public long getBestAskPrice() {
+        return askPrices.length == 0 ? 0 : askPrices[0];
+    }
+    
+    public long getSpread() {
+        if (bidPrices.length == 0 || askPrices.length == 0) return 0;
+        return getBestAskPrice() - getBestBidPrice();
+    }
+}
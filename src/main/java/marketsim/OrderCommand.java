@@ -0,0 +1,128 @@
+package marketsim;
+
+import java.util.concurrent.CompletableFuture;
+
+// Mutable command slot; ring buffer ingress reuses one instance per slot.
+// A NEW command carries either a caller-built Order or the order's fields, in which
+// case the matching thread materialises it from the book's OrderPool. BATCH, CANCEL_ALL and AMEND
+// apply several book changes as one command, acknowledged once through a single future.
+public class OrderCommand {
+    public enum Type {
+        NEW, CANCEL,
+        BATCH, // Caller-built orders for one book, submitted in array order
+        CANCEL_ALL, // Every resting order of one trader in the book
+        AMEND, // Cancel/replace of one resting order, keeping its id
+        TASK // Runs arbitrary work on the shard thread, between two other commands
+    }
+    
+    long sequence; // Ring position, owned by the ingress
+    
+    private Type type;
+    private OrderBook book;
+    private Order order;
+    private Order[] orders;
+    private long orderId;
+    private int trader; // Trader directory id of traderId
+    private String traderId;
+    private Order.Side side;
+    private Order.Type orderType;
+    private long price;
+    private int quantity;
+    private long timestamp;
+    private CompletableFuture<Boolean> result;
+    private CompletableFuture<Integer> countResult; // Completed with how many orders a bulk command applied
+    private Runnable task;
+    
+    // timestamp is when the command was enqueued, not when the caller built the order
+    void setNew(OrderBook book, Order order, long timestamp) {
+        this.type = Type.NEW;
+        this.book = book;
+        this.order = order;
+        this.timestamp = timestamp;
+    }
+    
+    void setNew(OrderBook book, long orderId, int trader, String traderId, Order.Side side, Order.Type orderType,
+                long price, int quantity, long timestamp) {
+        this.type = Type.NEW;
+        this.book = book;
+        this.orderId = orderId;
+        this.trader = trader;
+        this.traderId = traderId;
+        this.side = side;
+        this.orderType = orderType;
+        this.price = price;
+        this.quantity = quantity;
+        this.timestamp = timestamp;
+    }
+    
+    // trader is the id the order must belong to, or -1 to cancel whoever owns it
+    void setCancel(OrderBook book, long orderId, int trader, CompletableFuture<Boolean> result, long timestamp) {
+        this.type = Type.CANCEL;
+        this.book = book;
+        this.orderId = orderId;
+        this.trader = trader;
+        this.timestamp = timestamp;
+        this.result = result;
+    }
+    
+    void setBatch(OrderBook book, Order[] orders, CompletableFuture<Integer> countResult, long timestamp) {
+        this.type = Type.BATCH;
+        this.book = book;
+        this.orders = orders;
+        this.timestamp = timestamp;
+        this.countResult = countResult;
+    }
+    
+    void setCancelAll(OrderBook book, String traderId, CompletableFuture<Integer> countResult, long timestamp) {
+        this.type = Type.CANCEL_ALL;
+        this.book = book;
+        this.traderId = traderId;
+        this.timestamp = timestamp;
+        this.countResult = countResult;
+    }
+    
+    void setAmend(OrderBook book, long orderId, long price, int quantity, CompletableFuture<Boolean> result,
+                  long timestamp) {
+        this.type = Type.AMEND;
+        this.book = book;
+        this.orderId = orderId;
+        this.price = price;
+        this.quantity = quantity;
+        this.timestamp = timestamp;
+        this.result = result;
+    }
+    
+    void setTask(Runnable task) {
+        this.type = Type.TASK;
+        this.task = task;
+    }
+    
+    void clear() {
+        this.type = null;
+        this.book = null;
+        this.order = null;
+        this.orders = null;
+        this.traderId = null;
+        this.side = null;
+        this.orderType = null;
+        this.result = null;
+        this.countResult = null;
+        this.task = null;
+    }
+    
+    public Type getType() { return type; }
+    public OrderBook getBook() { return book; }
+    public Order getOrder() { return order; }
+    public Order[] getOrders() { return orders; }
+    public long getOrderId() { return orderId; }
+    public int getTrader() { return trader; }
+    public String getTraderId() { return traderId; }
+    public Order.Side getSide() { return side; }
+    public Order.Type getOrderType() { return orderType; }
+    public long getPrice() { return price; }
+    public int getQuantity() { return quantity; }
+    public long getTimestamp() { return timestamp; }
+    public CompletableFuture<Boolean> getResult() { return result; }
+    public CompletableFuture<Integer> getCountResult() { return countResult; }
+    public Runnable getTask() { return task; }
+}
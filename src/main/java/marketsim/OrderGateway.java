@@ -0,0 +1,439 @@
+package marketsim;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+// TCP order entry speaking GatewayProtocol. One non-blocking I/O thread accepts sessions, decodes
+// every complete message in a read straight from the session's direct receive buffer into an
+// engine command, and appends acks to the session's direct send buffer. Fills arrive on the
+// gateway's own trade listener thread and are appended to the owning trader's session the same
+// way. Send buffers are written out once per selector pass, so everything produced for a session
+// since the last pass leaves in one write.
+//
+// The session lock only ever guards a buffer append: no thread calls into the engine while holding
+// it, because a full shard ring or listener buffer would otherwise deadlock against the I/O thread.
+// A NEW's ACK slot is reserved in the send buffer before the order is submitted and filled in once
+// its id is known; fills queue up behind it, so a client never sees a fill for an order id before
+// the ack that tells it the id. Only the I/O thread flushes, so a half-written slot never goes out.
+//
+// Only symbols the operator registered with the engine can be traded: a NEW for any other symbol
+// is rejected as invalid rather than creating a book.
+public class OrderGateway implements AutoCloseable {
+    private static final int RECEIVE_BUFFER_SIZE = 64 * 1024;
+    private static final int SEND_BUFFER_SIZE = 256 * 1024;
+    private static final int LISTENER_CAPACITY = 1 << 14;
+    
+    private static final Order.Side[] SIDES = Order.Side.values();
+    private static final Order.Type[] TYPES = Order.Type.values();
+    
+    private final MatchingEngine engine;
+    private final EventLog log;
+    private final InetSocketAddress address;
+    private final Map<String, Session> sessionsByTrader; // Fill routing, read by the listener thread
+    private final List<Session> sessions; // I/O thread only
+    private final LongIntHashMap symbolIds; // Packed wire symbol -> engine symbol id; I/O thread only
+    private final AtomicBoolean wakeupPending;
+    private final AtomicLong messagesReceived; // Written by the I/O thread only
+    private final AtomicLong ordersAccepted;
+    private final AtomicLong rejects;
+    private final AtomicLong fillsSent; // Written by the trade listener thread only
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread ioThread;
+    private volatile boolean running;
+    
+    public OrderGateway(MatchingEngine engine, InetSocketAddress address) {
+        this.engine = engine;
+        this.log = engine.getEventLog();
+        this.address = address;
+        this.sessionsByTrader = new ConcurrentHashMap<>();
+        this.sessions = new ArrayList<>();
+        this.symbolIds = new LongIntHashMap(64);
+        this.wakeupPending = new AtomicBoolean();
+        this.messagesReceived = new AtomicLong();
+        this.ordersAccepted = new AtomicLong();
+        this.rejects = new AtomicLong();
+        this.fillsSent = new AtomicLong();
+    }
+    
+    public void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        engine.addTradeListener(this::onTrades, LISTENER_CAPACITY, BackpressurePolicy.BLOCK);
+        running = true;
+        ioThread = new Thread(this::run, "OrderGateway-IO");
+        ioThread.setDaemon(true);
+        ioThread.start();
+        log.log(EventLog.Level.INFO, "Order gateway listening on port {}", getPort());
+    }
+    
+    // The bound port, useful after binding to port 0
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) server.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("Gateway is not bound", e);
+        }
+    }
+    
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                wakeupPending.set(false);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read((Session) key.attachment());
+                    }
+                }
+                flushAll();
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                log.log(EventLog.Level.ERROR, "Order gateway I/O error: {}", e);
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Session session = new Session(channel);
+            session.key = channel.register(selector, SelectionKey.OP_READ, session);
+            sessions.add(session);
+        }
+    }
+    
+    private void read(Session session) {
+        ByteBuffer in = session.in;
+        try {
+            if (session.channel.read(in) < 0) {
+                close(session, null);
+                return;
+            }
+        } catch (IOException e) {
+            close(session, e);
+            return;
+        }
+        in.flip();
+        while (in.hasRemaining()) {
+            int offset = in.position();
+            byte type = in.get(offset);
+            int length = GatewayProtocol.lengthOf(type);
+            if (length < 0 || type > GatewayProtocol.CANCEL) {
+                log.log(EventLog.Level.WARN, "Closing gateway session {}: unknown message type {}",
+                        session.traderId, type);
+                close(session, null);
+                return;
+            }
+            if (in.remaining() < length) break;
+            messagesReceived.lazySet(messagesReceived.get() + 1);
+            decode(session, in, type, offset);
+            in.position(offset + length);
+        }
+        in.compact();
+    }
+    
+    // Fields are read at absolute offsets from the receive buffer; nothing is copied out
+    private void decode(Session session, ByteBuffer in, byte type, int offset) {
+        if (type == GatewayProtocol.LOGIN) {
+            login(session, GatewayProtocol.getAscii(in, offset + 1, GatewayProtocol.TRADER_ID_LENGTH));
+        } else if (type == GatewayProtocol.NEW) {
+            long clientOrderId = in.getLong(offset + 1);
+            if (session.traderId == null) {
+                reject(session, clientOrderId, GatewayProtocol.REJECT_NOT_LOGGED_IN);
+                return;
+            }
+            long packedSymbol = in.getLong(offset + 9);
+            int side = in.get(offset + 17);
+            int orderType = in.get(offset + 18);
+            long price = in.getLong(offset + 19);
+            int quantity = in.getInt(offset + 27);
+            if (side < 0 || side >= SIDES.length || orderType < 0 || orderType >= TYPES.length
+                    || quantity <= 0 || (price <= 0 && TYPES[orderType] != Order.Type.MARKET)) {
+                reject(session, clientOrderId, GatewayProtocol.REJECT_INVALID);
+                return;
+            }
+            int symbol = lookupSymbol(packedSymbol);
+            if (symbol < 0) {
+                reject(session, clientOrderId, GatewayProtocol.REJECT_INVALID);
+                return;
+            }
+            long orderId = 0;
+            byte reason = GatewayProtocol.REJECT_ENGINE_STOPPED;
+            int slot = reserveAck(session);
+            try {
+                orderId = engine.submitOrder(session.trader, symbol, SIDES[side], TYPES[orderType], price, quantity);
+                reason = orderId < 0 ? (byte) (GatewayProtocol.REJECT_RISK - orderId) : 0;
+            } catch (IllegalStateException e) {
+                // Engine stopped underneath the session
+            } finally {
+                answer(session, slot, clientOrderId, orderId, reason);
+            }
+        } else {
+            long orderId = in.getLong(offset + 1 + GatewayProtocol.SYMBOL_LENGTH);
+            if (session.traderId == null) {
+                reject(session, orderId, GatewayProtocol.REJECT_NOT_LOGGED_IN);
+                return;
+            }
+            CancelAck ack = new CancelAck(session, orderId);
+            try {
+                // The shard only cancels the order if this session's trader owns it
+                engine.cancelOrderAsync(session.trader, lookupSymbol(in.getLong(offset + 1)), orderId)
+                        .whenComplete(ack);
+            } catch (IllegalStateException e) {
+                ack.accept(false, e);
+            }
+        }
+    }
+    
+    private void login(Session session, String traderId) {
+        if (session.traderId != null) {
+            sessionsByTrader.remove(session.traderId, session);
+        }
+        session.trader = engine.getTraderDirectory().register(traderId);
+        session.traderId = traderId;
+        Session previous = sessionsByTrader.put(traderId, session);
+        if (previous != null) {
+            log.log(EventLog.Level.WARN, "Trader {} logged in again; fills now go to the newer session", traderId);
+        }
+    }
+    
+    // I/O thread, before submitting a NEW: the send buffer offset of its ACK, -1 if it overflowed
+    private int reserveAck(Session session) {
+        synchronized (session) {
+            if (!session.reserve(GatewayProtocol.ACK_LENGTH)) return -1;
+            int slot = session.out.position();
+            session.out.position(slot + GatewayProtocol.ACK_LENGTH);
+            return slot;
+        }
+    }
+    
+    // Writes the ACK into its slot; a REJECT is shorter, so the fills queued since move down over the
+    // slot and the REJECT is appended after them - they belong to other orders
+    private void answer(Session session, int slot, long clientOrderId, long orderId, byte reason) {
+        if (reason != 0) {
+            rejects.lazySet(rejects.get() + 1);
+        } else {
+            ordersAccepted.lazySet(ordersAccepted.get() + 1);
+        }
+        synchronized (session) {
+            if (slot < 0) return;
+            ByteBuffer out = session.out;
+            int end = out.position();
+            if (reason == 0) {
+                out.position(slot);
+                GatewayProtocol.putAck(out, clientOrderId, orderId);
+                out.position(end);
+            } else {
+                ByteBuffer queued = out.duplicate().limit(end).position(slot + GatewayProtocol.ACK_LENGTH);
+                out.position(slot);
+                out.put(queued);
+                GatewayProtocol.putReject(out, clientOrderId, reason);
+            }
+        }
+    }
+    
+    private void reject(Session session, long clientOrderId, byte reason) {
+        rejects.lazySet(rejects.get() + 1);
+        synchronized (session) {
+            if (session.reserve(GatewayProtocol.REJECT_LENGTH)) {
+                GatewayProtocol.putReject(session.out, clientOrderId, reason);
+            }
+        }
+    }
+    
+    // Each registered symbol is decoded and resolved to its engine id once; after that the packed
+    // wire form is the key. The gateway never creates a book: a symbol without one resolves to -1
+    // and is looked up again next time, as the operator may register it later.
+    private int lookupSymbol(long packed) {
+        int id = symbolIds.get(packed);
+        if (id == LongIntHashMap.MISSING) {
+            id = engine.lookupSymbol(GatewayProtocol.unpackSymbol(packed));
+            if (id >= 0) {
+                symbolIds.put(packed, id);
+            }
+        }
+        return id;
+    }
+    
+    // Gateway trade listener thread
+    private void onTrades(Trade[] trades, int count) {
+        boolean appended = false;
+        for (int i = 0; i < count; i++) {
+            Trade trade = trades[i];
+            appended |= appendFill(trade.getBuyTraderId(), trade.getBuyOrderId(), trade);
+            appended |= appendFill(trade.getSellTraderId(), trade.getSellOrderId(), trade);
+        }
+        if (appended) {
+            wakeup();
+        }
+    }
+    
+    private boolean appendFill(String traderId, long orderId, Trade trade) {
+        Session session = sessionsByTrader.get(traderId);
+        if (session == null) return false;
+        synchronized (session) {
+            if (session.reserve(GatewayProtocol.FILL_LENGTH)) {
+                GatewayProtocol.putFill(session.out, orderId, trade.getTradeId(), trade.getPrice(),
+                        trade.getQuantity());
+                fillsSent.lazySet(fillsSent.get() + 1);
+            }
+        }
+        return true; // Either queued or overflowed; the I/O thread has work either way
+    }
+    
+    // Coalesces wakeups from other threads into one per selector pass
+    private void wakeup() {
+        if (!wakeupPending.get() && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+    
+    private void flushAll() {
+        for (int i = sessions.size() - 1; i >= 0; i--) {
+            Session session = sessions.get(i);
+            if (session.overflowed) {
+                log.log(EventLog.Level.WARN, "Closing gateway session {}: send buffer full", session.traderId);
+                close(session, null);
+                continue;
+            }
+            try {
+                synchronized (session) {
+                    ByteBuffer out = session.out;
+                    if (out.position() == 0) continue;
+                    out.flip();
+                    session.channel.write(out);
+                    out.compact();
+                    // Let the selector report when a full socket buffer drains
+                    session.key.interestOps(out.position() > 0
+                            ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                }
+            } catch (IOException e) {
+                close(session, e);
+            }
+        }
+    }
+    
+    private void close(Session session, Exception cause) {
+        if (cause != null) {
+            log.log(EventLog.Level.INFO, "Gateway session {} disconnected: {}", session.traderId, cause);
+        }
+        if (session.traderId != null) {
+            sessionsByTrader.remove(session.traderId, session);
+        }
+        sessions.remove(session);
+        session.key.cancel();
+        try {
+            session.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+    
+    public int getSessionCount() {
+        return sessionsByTrader.size();
+    }
+    
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+    
+    public long getOrdersAccepted() {
+        return ordersAccepted.get();
+    }
+    
+    public long getRejects() {
+        return rejects.get();
+    }
+    
+    public long getFillsSent() {
+        return fillsSent.get();
+    }
+    
+    @Override
+    public void close() {
+        if (!running) return;
+        running = false;
+        try {
+            selector.close();
+            ioThread.join(5000);
+            for (Session session : sessions) {
+                session.channel.close();
+            }
+            server.close();
+        } catch (IOException e) {
+            log.log(EventLog.Level.WARN, "Error closing order gateway: {}", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sessionsByTrader.clear();
+        log.log(EventLog.Level.INFO, "Order gateway closed");
+    }
+    
+    private static final class Session {
+        final SocketChannel channel;
+        final ByteBuffer in; // I/O thread only
+        final ByteBuffer out; // Guarded by the session's monitor
+        SelectionKey key;
+        volatile String traderId;
+        int trader; // Engine trader directory id; I/O thread only
+        volatile boolean overflowed;
+        
+        Session(SocketChannel channel) {
+            this.channel = channel;
+            this.in = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+            this.out = ByteBuffer.allocateDirect(SEND_BUFFER_SIZE);
+        }
+        
+        // A client that stops reading is cut off rather than buffered for without bound
+        boolean reserve(int length) {
+            if (out.remaining() >= length) return true;
+            overflowed = true;
+            return false;
+        }
+    }
+    
+    // Appends the cancel result when the owning shard completes it, then wakes the I/O thread
+    private final class CancelAck implements BiConsumer<Boolean, Throwable> {
+        private final Session session;
+        private final long orderId;
+        
+        CancelAck(Session session, long orderId) {
+            this.session = session;
+            this.orderId = orderId;
+        }
+        
+        @Override
+        public void accept(Boolean cancelled, Throwable error) {
+            synchronized (session) {
+                if (session.reserve(GatewayProtocol.CANCEL_ACK_LENGTH)) {
+                    GatewayProtocol.putCancelAck(session.out, orderId, error == null && cancelled);
+                }
+            }
+            wakeup();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package marketsim;
+
+import java.util.function.Consumer;
+
+// Inbound command queue of one matching shard: many submitting threads, one draining thread
+public interface OrderIngress {
+    // Returns a command for the calling thread to fill in; it must be handed back to publish()
+    OrderCommand claim();
+    
+    void publish(OrderCommand command);
+    
+    // Hands up to maxBatch pending commands to the handler and returns how many there were.
+    // The command object is only valid for the duration of the callback.
+    int drain(Consumer<OrderCommand> handler, int maxBatch) throws InterruptedException;
+    
+    int size();
+}
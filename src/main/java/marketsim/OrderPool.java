@@ -0,0 +1,31 @@
+package marketsim;
+
+// Free list of Order instances for one book; only the book's matching thread touches it.
+// Orders only live here while they are being matched: whatever rests is copied into the book's
+// OrderStore, so the pool stays as small as one batch of incoming orders.
+public class OrderPool {
+    private Order[] free;
+    private int size;
+    
+    public OrderPool(int capacity) {
+        this.free = new Order[capacity];
+    }
+    
+    public Order acquire() {
+        Order order = size > 0 ? free[--size] : new Order();
+        free[size] = null;
+        order.pooled = true;
+        return order;
+    }
+    
+    // Keeps at most the initial capacity; beyond that, released orders are left to the GC
+    public void release(Order order) {
+        if (!order.pooled || size == free.length) return;
+        order.init(0, null, null, null, 0, 0, 0);
+        free[size++] = order;
+    }
+    
+    public int getFreeCount() {
+        return size;
+    }
+}
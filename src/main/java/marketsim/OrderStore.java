@@ -0,0 +1,225 @@
+package marketsim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+// Resting orders of one book as fixed-width records in a single ByteBuffer, addressed by slot.
+// The buffer is either a heap array or direct (off-heap) memory; in both cases a resting order is
+// 56 bytes and no object, so what the GC traces stays constant however deep the book gets. The
+// symbol is the book's, and trader ids are interned to ints. Owner thread only.
+//
+// Record: long orderId, long price, long timestamp, int trader, int originalQuantity,
+// int remainingQuantity, int prev, int next, byte side, byte status, 2 bytes padding,
+// int traderPrev, int traderNext.
+// prev/next chain a price level; a free record's next links it into the free list instead.
+// traderPrev/traderNext chain all resting orders of one trader, so they can be found without a scan.
+public class OrderStore {
+    public static final int NONE = -1;
+    
+    private static final int RECORD_SIZE = 56;
+    private static final int ORDER_ID = 0;
+    private static final int PRICE = 8;
+    private static final int TIMESTAMP = 16;
+    private static final int TRADER = 24;
+    private static final int ORIGINAL_QUANTITY = 28;
+    private static final int REMAINING_QUANTITY = 32;
+    private static final int PREV = 36;
+    private static final int NEXT = 40;
+    private static final int SIDE = 44;
+    private static final int STATUS = 45;
+    private static final int TRADER_PREV = 48;
+    private static final int TRADER_NEXT = 52;
+    private static final int MAX_SLOTS = Integer.MAX_VALUE / RECORD_SIZE; // ~38M orders per book
+    
+    private static final Order.Side[] SIDES = Order.Side.values();
+    private static final Order.Status[] STATUSES = Order.Status.values();
+    
+    private final boolean offHeap;
+    private final Map<String, Integer> traderIds;
+    private String[] traders;
+    private int[] traderIndexes; // By interned trader: engine directory id, or -1
+    private int[] traderHeads; // By interned trader: most recently added resting order, or NONE
+    private ByteBuffer records;
+    private int capacity;
+    private int slotCount; // Slots handed out so far
+    private int freeHead;
+    private int size;
+    
+    public OrderStore(int capacity, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.traderIds = new HashMap<>();
+        this.traders = new String[64];
+        this.traderIndexes = new int[64];
+        this.traderHeads = new int[64];
+        this.capacity = initialCapacity(capacity);
+        this.records = allocate(this.capacity);
+        this.freeHead = NONE;
+    }
+    
+    private ByteBuffer allocate(int slots) {
+        int bytes = slots * RECORD_SIZE;
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        return buffer.order(ByteOrder.nativeOrder());
+    }
+    
+    // Copies the order's current state into a free record; the Order itself is not kept
+    public int add(Order order) {
+        int slot = freeHead;
+        if (slot != NONE) {
+            freeHead = next(slot);
+        } else {
+            if (slotCount == capacity) {
+                grow();
+            }
+            slot = slotCount++;
+        }
+        int base = slot * RECORD_SIZE;
+        int trader = intern(order.getTraderId(), order.getTraderIndex());
+        records.putLong(base + ORDER_ID, order.getOrderId());
+        records.putLong(base + PRICE, order.getPrice());
+        records.putLong(base + TIMESTAMP, order.getTimestamp());
+        records.putInt(base + TRADER, trader);
+        records.putInt(base + ORIGINAL_QUANTITY, order.getOriginalQuantity());
+        records.putInt(base + REMAINING_QUANTITY, order.getRemainingQuantity());
+        records.putInt(base + PREV, NONE);
+        records.putInt(base + NEXT, NONE);
+        records.put(base + SIDE, (byte) order.getSide().ordinal());
+        records.put(base + STATUS, (byte) order.getStatus().ordinal());
+        int head = traderHeads[trader];
+        records.putInt(base + TRADER_PREV, NONE);
+        records.putInt(base + TRADER_NEXT, head);
+        if (head != NONE) {
+            records.putInt(head * RECORD_SIZE + TRADER_PREV, slot);
+        }
+        traderHeads[trader] = slot;
+        size++;
+        return slot;
+    }
+    
+    public void free(int slot) {
+        int base = slot * RECORD_SIZE;
+        int prev = records.getInt(base + TRADER_PREV);
+        int next = records.getInt(base + TRADER_NEXT);
+        if (prev != NONE) {
+            records.putInt(prev * RECORD_SIZE + TRADER_NEXT, next);
+        } else {
+            traderHeads[records.getInt(base + TRADER)] = next;
+        }
+        if (next != NONE) {
+            records.putInt(next * RECORD_SIZE + TRADER_PREV, prev);
+        }
+        setNext(slot, freeHead);
+        freeHead = slot;
+        size--;
+    }
+    
+    private void grow() {
+        if (capacity == MAX_SLOTS) {
+            throw new IllegalStateException("Order store is full at " + MAX_SLOTS + " orders");
+        }
+        int grown = (int) Math.min((long) capacity * 2, MAX_SLOTS);
+        ByteBuffer buffer = allocate(grown);
+        buffer.put(0, records, 0, capacity * RECORD_SIZE);
+        records = buffer;
+        capacity = grown;
+    }
+    
+    private int intern(String traderId, int traderIndex) {
+        Integer id = traderIds.get(traderId);
+        if (id == null) {
+            id = traderIds.size();
+            if (id == traders.length) {
+                traders = java.util.Arrays.copyOf(traders, id * 2);
+                traderIndexes = java.util.Arrays.copyOf(traderIndexes, id * 2);
+                traderHeads = java.util.Arrays.copyOf(traderHeads, id * 2);
+            }
+            traders[id] = traderId;
+            traderIndexes[id] = traderIndex;
+            traderHeads[id] = NONE;
+            traderIds.put(traderId, id);
+        } else if (traderIndex >= 0) {
+            traderIndexes[id] = traderIndex;
+        }
+        return id;
+    }
+    
+    // Fills a scratch Order with the record's state, e.g. to hand resting orders to a visitor
+    public void copyTo(int slot, String symbol, Order order) {
+        int original = originalQuantity(slot);
+        order.init(orderId(slot), traderId(slot), symbol, side(slot), price(slot), original, timestamp(slot));
+        if (remainingQuantity(slot) < original) {
+            order.reduceQuantity(original - remainingQuantity(slot));
+        }
+        order.setStatus(status(slot));
+        order.setTraderIndex(traderIndex(slot));
+    }
+    
+    public long orderId(int slot) { return records.getLong(slot * RECORD_SIZE + ORDER_ID); }
+    public long price(int slot) { return records.getLong(slot * RECORD_SIZE + PRICE); }
+    public long timestamp(int slot) { return records.getLong(slot * RECORD_SIZE + TIMESTAMP); }
+    public String traderId(int slot) { return traders[records.getInt(slot * RECORD_SIZE + TRADER)]; }
+    public int traderIndex(int slot) { return traderIndexes[records.getInt(slot * RECORD_SIZE + TRADER)]; }
+    public int originalQuantity(int slot) { return records.getInt(slot * RECORD_SIZE + ORIGINAL_QUANTITY); }
+    public int remainingQuantity(int slot) { return records.getInt(slot * RECORD_SIZE + REMAINING_QUANTITY); }
+    public int prev(int slot) { return records.getInt(slot * RECORD_SIZE + PREV); }
+    public int next(int slot) { return records.getInt(slot * RECORD_SIZE + NEXT); }
+    public Order.Side side(int slot) { return SIDES[records.get(slot * RECORD_SIZE + SIDE)]; }
+    public Order.Status status(int slot) { return STATUSES[records.get(slot * RECORD_SIZE + STATUS)]; }
+    
+    // First of the trader's resting orders, newest first, or NONE; continue with nextOfTrader()
+    public int firstOfTrader(String traderId) {
+        Integer trader = traderIds.get(traderId);
+        return trader != null ? traderHeads[trader] : NONE;
+    }
+    
+    public int nextOfTrader(int slot) { return records.getInt(slot * RECORD_SIZE + TRADER_NEXT); }
+    
+    void setPrev(int slot, int prev) { records.putInt(slot * RECORD_SIZE + PREV, prev); }
+    void setNext(int slot, int next) { records.putInt(slot * RECORD_SIZE + NEXT, next); }
+    
+    // Amend down: the order keeps its status, only its open quantity shrinks
+    void setRemainingQuantity(int slot, int quantity) {
+        records.putInt(slot * RECORD_SIZE + REMAINING_QUANTITY, quantity);
+    }
+    
+    // Same status rules as Order.reduceQuantity()
+    public void reduceQuantity(int slot, int quantity) {
+        int remaining = remainingQuantity(slot) - quantity;
+        records.putInt(slot * RECORD_SIZE + REMAINING_QUANTITY, remaining);
+        Order.Status status = remaining <= 0 ? Order.Status.FILLED : Order.Status.PARTIALLY_FILLED;
+        records.put(slot * RECORD_SIZE + STATUS, (byte) status.ordinal());
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    // Records freed by fills and cancels that the next orders will reuse
+    public int getFreeCount() {
+        return slotCount - size;
+    }
+    
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+    
+    // Bytes of record storage reserved, on or off the heap depending on isOffHeap()
+    public long footprintBytes() {
+        return (long) capacity * RECORD_SIZE;
+    }
+    
+    // Bytes a store created with this capacity settles at once it has held this many orders at a time
+    public static long footprintBytes(int capacity, int orders) {
+        long slots = initialCapacity(capacity);
+        while (slots < orders) {
+            slots = Math.min(slots * 2, MAX_SLOTS);
+        }
+        return slots * RECORD_SIZE;
+    }
+    
+    private static int initialCapacity(int capacity) {
+        return Math.max(16, capacity);
+    }
+}
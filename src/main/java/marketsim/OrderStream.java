@@ -0,0 +1,316 @@
+package marketsim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Recorded order flow for backtests: a file of fixed-width command records, memory-mapped for
+// reading. Symbols and trader ids are stored once in a trailing dictionary and referenced by index,
+// so every record has the same width and a reader that only wants some symbols skips the others
+// after reading two bytes.
+//
+// Layout: header, records, dictionary
+//   header: int magic, int formatVersion, long recordCount, long dictionaryOffset, int symbolCount,
+//           int traderCount
+//   record: long timestamp, long orderId, long price, int quantity, short symbol, byte kind,
+//           byte side | order type << 1, int trader (-1 for cancels and amends)
+//   CANCEL_ALL records carry only the trader; AMEND records the new price and open quantity
+//   dictionary: the symbols, then the trader ids, each a short char count followed by the chars
+//
+// Records of one symbol are in the order they were recorded; records of different symbols may
+// interleave in any order, since symbols never interact.
+public class OrderStream {
+    public static final byte NEW = 1;
+    public static final byte CANCEL = 2;
+    public static final byte CANCEL_ALL = 3; // Since format version 2
+    public static final byte AMEND = 4; // Since format version 2
+    
+    private static final int MAGIC = 0x4F4D4553; // "OMES"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 36;
+    private static final int RECORDS_PER_WINDOW = 1 << 22; // About 150 MB mapped at a time
+    private static final int MAX_SYMBOLS = 0xFFFF;
+    private static final Order.Side[] SIDES = Order.Side.values();
+    private static final Order.Type[] TYPES = Order.Type.values();
+    
+    private final long recordCount;
+    private final String[] symbols;
+    private final String[] traders;
+    private final MappedByteBuffer[] windows; // Read with absolute gets only, so cursors can share them
+    
+    private OrderStream(long recordCount, String[] symbols, String[] traders, MappedByteBuffer[] windows) {
+        this.recordCount = recordCount;
+        this.symbols = symbols;
+        this.traders = traders;
+        this.windows = windows;
+    }
+    
+    public static OrderStream open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not an order stream: " + path);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not an order stream: " + path);
+            }
+            int version = header.getInt();
+            if (version < 1 || version > FORMAT_VERSION) { // Version 1 is version 2 without bulk commands
+                throw new IOException("Unsupported order stream version " + version + ": " + path);
+            }
+            long recordCount = header.getLong();
+            long dictionaryOffset = header.getLong();
+            int symbolCount = header.getInt();
+            int traderCount = header.getInt();
+            
+            MappedByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                    channel.size() - dictionaryOffset);
+            String[] symbols = new String[symbolCount];
+            for (int i = 0; i < symbolCount; i++) {
+                symbols[i] = getString(dictionary);
+            }
+            String[] traders = new String[traderCount];
+            for (int i = 0; i < traderCount; i++) {
+                traders[i] = getString(dictionary);
+            }
+            
+            MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((recordCount + RECORDS_PER_WINDOW - 1) / RECORDS_PER_WINDOW)];
+            for (int i = 0; i < windows.length; i++) {
+                long first = (long) i * RECORDS_PER_WINDOW;
+                long count = Math.min(RECORDS_PER_WINDOW, recordCount - first);
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                        count * RECORD_SIZE);
+            }
+            return new OrderStream(recordCount, symbols, traders, windows);
+        }
+    }
+    
+    public static Writer create(Path path) throws IOException {
+        return new Writer(path);
+    }
+    
+    // Each cursor walks the whole stream independently; any number may be read in parallel
+    public Cursor cursor() {
+        return new Cursor();
+    }
+    
+    public long getRecordCount() {
+        return recordCount;
+    }
+    
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+    
+    public String getSymbol(int index) {
+        return symbols[index];
+    }
+    
+    public int getTraderCount() {
+        return traders.length;
+    }
+    
+    public String getTrader(int index) {
+        return traders[index];
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+    
+    // Field accessors read the current record in place
+    public final class Cursor {
+        private long next; // Index of the record after the current one
+        private ByteBuffer window;
+        private int offset;
+        
+        private Cursor() {
+        }
+        
+        public boolean next() {
+            if (next == recordCount) return false;
+            window = windows[(int) (next / RECORDS_PER_WINDOW)];
+            offset = (int) (next % RECORDS_PER_WINDOW) * RECORD_SIZE;
+            next++;
+            return true;
+        }
+        
+        public long timestamp() { return window.getLong(offset); }
+        public long orderId() { return window.getLong(offset + 8); }
+        public long price() { return window.getLong(offset + 16); }
+        public int quantity() { return window.getInt(offset + 24); }
+        public int symbol() { return window.getShort(offset + 28) & 0xFFFF; }
+        public byte kind() { return window.get(offset + 30); }
+        public Order.Side side() { return SIDES[window.get(offset + 31) & 1]; }
+        public Order.Type orderType() { return TYPES[window.get(offset + 31) >> 1]; }
+        public int trader() { return window.getInt(offset + 32); }
+    }
+    
+    // Appends records through one reused buffer; the header and dictionary are written by close().
+    // Also a JournalRecordHandler, so a recorded session's journal converts with Journal.replay().
+    public static class Writer implements JournalRecordHandler, AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final Map<String, Integer> symbolIndex;
+        private final List<String> symbols;
+        private final Map<String, Integer> traderIndex;
+        private final List<String> traders;
+        private long recordCount;
+        
+        private Writer(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 32 * 1024);
+            this.symbolIndex = new HashMap<>();
+            this.symbols = new ArrayList<>();
+            this.traderIndex = new HashMap<>();
+            this.traders = new ArrayList<>();
+            channel.position(HEADER_SIZE);
+        }
+        
+        public void appendNew(long timestamp, long orderId, String symbol, String traderId, Order.Side side,
+                              Order.Type type, long price, int quantity) throws IOException {
+            append(timestamp, orderId, price, quantity, symbolOf(symbol), NEW,
+                    (byte) (side.ordinal() | type.ordinal() << 1), traderOf(traderId));
+        }
+        
+        public void appendCancel(long timestamp, long orderId, String symbol) throws IOException {
+            append(timestamp, orderId, 0, 0, symbolOf(symbol), CANCEL, (byte) 0, -1);
+        }
+        
+        public void appendCancelAll(long timestamp, String symbol, String traderId) throws IOException {
+            append(timestamp, 0, 0, 0, symbolOf(symbol), CANCEL_ALL, (byte) 0, traderOf(traderId));
+        }
+        
+        public void appendAmend(long timestamp, long orderId, String symbol, long price, int quantity) throws IOException {
+            append(timestamp, orderId, price, quantity, symbolOf(symbol), AMEND, (byte) 0, -1);
+        }
+        
+        private int traderOf(String traderId) {
+            return traderIndex.computeIfAbsent(traderId, t -> {
+                traders.add(t);
+                return traders.size() - 1;
+            });
+        }
+        
+        private int symbolOf(String symbol) {
+            return symbolIndex.computeIfAbsent(symbol, s -> {
+                if (symbols.size() == MAX_SYMBOLS) {
+                    throw new IllegalStateException("An order stream holds at most " + MAX_SYMBOLS + " symbols");
+                }
+                symbols.add(s);
+                return symbols.size() - 1;
+            });
+        }
+        
+        private void append(long timestamp, long orderId, long price, int quantity, int symbol, byte kind,
+                            byte sideAndType, int trader) throws IOException {
+            if (buffer.remaining() < RECORD_SIZE) {
+                drain();
+            }
+            buffer.putLong(timestamp);
+            buffer.putLong(orderId);
+            buffer.putLong(price);
+            buffer.putInt(quantity);
+            buffer.putShort((short) symbol);
+            buffer.put(kind);
+            buffer.put(sideAndType);
+            buffer.putInt(trader);
+            recordCount++;
+        }
+        
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        @Override
+        public void onNew(long sequence, long timestamp, long orderId, String symbol, String traderId,
+                          Order.Side side, Order.Type type, long price, int quantity) {
+            try {
+                appendNew(timestamp, orderId, symbol, traderId, side, type, price, quantity);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error writing order stream", e);
+            }
+        }
+        
+        @Override
+        public void onCancel(long sequence, long timestamp, long orderId, String symbol) {
+            try {
+                appendCancel(timestamp, orderId, symbol);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error writing order stream", e);
+            }
+        }
+        
+        @Override
+        public void onCancelAll(long sequence, long timestamp, String symbol, String traderId) {
+            try {
+                appendCancelAll(timestamp, symbol, traderId);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error writing order stream", e);
+            }
+        }
+        
+        @Override
+        public void onAmend(long sequence, long timestamp, long orderId, String symbol, long price, int quantity) {
+            try {
+                appendAmend(timestamp, orderId, symbol, price, quantity);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error writing order stream", e);
+            }
+        }
+        
+        public long getRecordCount() {
+            return recordCount;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            drain();
+            long dictionaryOffset = channel.position();
+            for (String symbol : symbols) {
+                putString(symbol);
+            }
+            for (String trader : traders) {
+                putString(trader);
+            }
+            drain();
+            
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putLong(recordCount);
+            buffer.putLong(dictionaryOffset);
+            buffer.putInt(symbols.size());
+            buffer.putInt(traders.size());
+            buffer.flip();
+            channel.write(buffer, 0);
+            channel.close();
+        }
+        
+        private void putString(String value) throws IOException {
+            if (buffer.remaining() < 2 + 2 * value.length()) {
+                drain();
+            }
+            buffer.putShort((short) value.length());
+            for (int i = 0; i < value.length(); i++) {
+                buffer.putChar(value.charAt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package marketsim;
+
+// FIFO queue of resting orders at one price, linked through the prev/next fields of their
+// OrderStore records
+public class PriceLevel {
+    private final Order.Side side;
+    private final long price; // In ticks
+    private final OrderStore store;
+    private int head = OrderStore.NONE; // Oldest order - first to match
+    private int tail = OrderStore.NONE; // Newest order
+    private long totalQuantity;
+    private int orderCount;
+
+    
+    // Changed since the owning book last emitted market data deltas
+    boolean changed;
+
+    public PriceLevel(Order.Side side, long price, OrderStore store) {
+        this.side = side;
+        this.price = price;
+        this.store = store;
+    }
+
+    public void append(int slot) {
+        store.setPrev(slot, tail);
+        store.setNext(slot, OrderStore.NONE);
+        if (tail == OrderStore.NONE) {
+            head = slot;
+        } else {
+            store.setNext(tail, slot);
+        }
+        tail = slot;
+        totalQuantity += store.remainingQuantity(slot);
+        orderCount++;
+    }
+
+    public void remove(int slot) {
+        int prev = store.prev(slot);
+        int next = store.next(slot);
+        if (prev == OrderStore.NONE) {
+            head = next;
+        } else {
+            store.setNext(prev, next);
+        }
+        if (next == OrderStore.NONE) {
+            tail = prev;
+        } else {
+            store.setPrev(next, prev);
+        }
+        totalQuantity -= store.remainingQuantity(slot);
+        orderCount--;
+    }
+
+    // Keeps the level total in step with a fill against one of its orders
+    public void reduceQuantity(int quantity) {
+        totalQuantity -= quantity;
+    }
+
+    public Order.Side getSide() { return side; }
+    public long getPrice() { return price; }
+    public int getHead() { return head; } // Slot in the store, or OrderStore.NONE
+    public long getTotalQuantity() { return totalQuantity; }
+    public int getOrderCount() { return orderCount; }
+    public boolean isEmpty() { return head == OrderStore.NONE; }
+}
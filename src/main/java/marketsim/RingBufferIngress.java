@@ -0,0 +1,107 @@
+package marketsim;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Preallocated ring of command slots with sequence-based claiming, in the style of the Disruptor.
+// Producers claim a sequence, fill the slot in place and publish it; the single consumer
+// drains published slots in order and releases them in batches.
+public class RingBufferIngress implements OrderIngress {
+    private final OrderCommand[] slots;
+    private final int mask;
+    private final AtomicLongArray published; // Sequence last published into each slot
+    private final AtomicLong claimSequence; // Next sequence to hand to a producer (multi-producer)
+    private long singleProducerSequence; // Next sequence to hand out when there is one producer
+    private final AtomicLong consumerSequence; // Next sequence the consumer will read
+    private long nextToConsume;
+    private int idleCount;
+    private final WaitStrategy waitStrategy;
+    private final boolean singleProducer;
+    
+    public RingBufferIngress(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, false);
+    }
+    
+    // singleProducer skips the atomic claim; only valid if exactly one thread ever publishes
+    public RingBufferIngress(int capacity, WaitStrategy waitStrategy, boolean singleProducer) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.slots = new OrderCommand[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new OrderCommand();
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.claimSequence = new AtomicLong();
+        this.consumerSequence = new AtomicLong();
+        this.waitStrategy = waitStrategy;
+        this.singleProducer = singleProducer;
+    }
+    
+    @Override
+    public OrderCommand claim() {
+        long sequence = singleProducer ? singleProducerSequence++ : claimSequence.getAndIncrement();
+        
+        // Ring is full: wait for the consumer to release the slot's previous lap. Producers
+        // always park here so that spinning submitters cannot starve the consumer of CPU.
+        while (sequence - slots.length >= consumerSequence.get()) {
+            LockSupport.parkNanos(1);
+        }
+        OrderCommand slot = slots[(int) sequence & mask];
+        slot.sequence = sequence;
+        return slot;
+    }
+    
+    @Override
+    public void publish(OrderCommand command) {
+        published.lazySet((int) command.sequence & mask, command.sequence);
+    }
+    
+    @Override
+    public int drain(Consumer<OrderCommand> handler, int maxBatch) {
+        long next = nextToConsume;
+        int count = 0;
+        try {
+            while (count < maxBatch) {
+                int index = (int) next & mask;
+                if (published.get(index) != next) break;
+                
+                OrderCommand command = slots[index];
+                next++;
+                count++;
+                try {
+                    handler.accept(command);
+                } finally {
+                    command.clear();
+                }
+            }
+        } finally {
+            // Release the whole batch to producers at once, even if a handler threw
+            if (count > 0) {
+                nextToConsume = next;
+                consumerSequence.lazySet(next);
+            }
+        }
+        
+        if (count == 0) {
+            waitStrategy.idle(idleCount++);
+        } else {
+            idleCount = 0;
+        }
+        return count;
+    }
+    
+    @Override
+    public int size() {
+        long claimed = singleProducer ? singleProducerSequence : claimSequence.get();
+        return (int) Math.max(0, claimed - consumerSequence.get());
+    }
+    
+    public int getCapacity() {
+        return slots.length;
+    }
+}
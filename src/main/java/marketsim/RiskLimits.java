@@ -0,0 +1,39 @@
+package marketsim;
+
+// Immutable pre-trade limits of one trader. Notional is price ticks * quantity; positions are in
+// shares, aggregate meaning the sum of absolute positions over all symbols.
+public class RiskLimits {
+    public static final RiskLimits UNLIMITED =
+            new RiskLimits(Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    
+    private final int maxOrderQuantity;
+    private final long maxOrderNotional;
+    private final long maxSymbolPosition;
+    private final long maxAggregatePosition;
+    private final int maxOrdersPerSecond;
+    
+    public RiskLimits(int maxOrderQuantity, long maxOrderNotional, long maxSymbolPosition,
+                      long maxAggregatePosition, int maxOrdersPerSecond) {
+        if (maxOrderQuantity <= 0 || maxOrderNotional <= 0 || maxSymbolPosition <= 0
+                || maxAggregatePosition <= 0 || maxOrdersPerSecond <= 0) {
+            throw new IllegalArgumentException("Risk limits must be positive");
+        }
+        this.maxOrderQuantity = maxOrderQuantity;
+        this.maxOrderNotional = maxOrderNotional;
+        this.maxSymbolPosition = maxSymbolPosition;
+        this.maxAggregatePosition = maxAggregatePosition;
+        this.maxOrdersPerSecond = maxOrdersPerSecond;
+    }
+    
+    public int getMaxOrderQuantity() { return maxOrderQuantity; }
+    public long getMaxOrderNotional() { return maxOrderNotional; }
+    public long getMaxSymbolPosition() { return maxSymbolPosition; }
+    public long getMaxAggregatePosition() { return maxAggregatePosition; }
+    public int getMaxOrdersPerSecond() { return maxOrdersPerSecond; }
+    
+    @Override
+    public String toString() {
+        return String.format("RiskLimits{orderQty=%d, orderNotional=%d, symbolPosition=%d, aggregatePosition=%d, ordersPerSecond=%d}",
+                maxOrderQuantity, maxOrderNotional, maxSymbolPosition, maxAggregatePosition, maxOrdersPerSecond);
+    }
+}
@@ -0,0 +1,263 @@
+package marketsim;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjLongConsumer;
+
+// Pre-trade risk stage, run by MatchingEngine.submitOrder on the submitting thread so a rejected
+// order never reaches a shard's queue. Traders and symbols are indexed by their Directory ids, shared
+// with the engine, and all state lives in atomic primitive arrays at those ids: a check is a few
+// array reads plus one CAS on the rate window, never a lock or a string hash.
+//
+// Exposure is updated from fills on the matching threads. A symbol's position row is only written
+// by that symbol's shard; the aggregate is an atomic add, as a trader's symbols may sit on different
+// shards. Position checks cover the filled position plus the new order, not other open orders, and
+// may see a position a few fills stale. Orders that reduce a position are always allowed.
+public class RiskManager {
+    public static final int ACCEPTED = 0;
+    public static final int REJECT_INVALID = 1; // Non-positive quantity, or non-positive price on a priced order
+    public static final int REJECT_ORDER_SIZE = 2;
+    public static final int REJECT_NOTIONAL = 3;
+    public static final int REJECT_SYMBOL_POSITION = 4;
+    public static final int REJECT_AGGREGATE_POSITION = 5;
+    public static final int REJECT_RATE = 6;
+    public static final int REJECT_TRADER_CAPACITY = 7; // More traders than the arrays were sized for
+    // Returned by MatchingEngine for a price its book could never rest; not counted here
+    public static final int REJECT_PRICE_WINDOW = 8;
+    
+    private static final String[] REASONS = {
+        "accepted", "invalid", "order size", "notional", "symbol position", "aggregate position", "rate",
+        "trader capacity", "price window"
+    };
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    
+    private final int capacity;
+    private final Directory symbols;
+    private final Directory traders;
+    private final AtomicReferenceArray<RiskLimits> limits; // Per trader; null means the defaults
+    private final AtomicLongArray rateWindows; // Per trader: second << 32 | orders accepted in that second
+    private final AtomicLongArray aggregatePositions; // Per trader: sum of |position| over symbols
+    private volatile AtomicLongArray[] symbolPositions; // By symbol id, per trader; replaced to grow
+    private final AtomicLongArray rejects; // Per reason
+    private volatile RiskLimits defaultLimits;
+    
+    // capacity: the most distinct traders that will be seen. Standalone, with its own directories;
+    // a MatchingEngine needs one built on its directories.
+    public RiskManager(RiskLimits defaultLimits, int capacity) {
+        this(defaultLimits, capacity, new Directory(), new Directory());
+    }
+    
+    // Traders whose id is capacity or more are rejected, so size it for every trader the directory
+    // will hold, not only those that submit orders
+    public RiskManager(RiskLimits defaultLimits, int capacity, Directory symbols, Directory traders) {
+        this.defaultLimits = defaultLimits;
+        this.capacity = capacity;
+        this.symbols = symbols;
+        this.traders = traders;
+        this.limits = new AtomicReferenceArray<>(capacity);
+        this.rateWindows = new AtomicLongArray(capacity);
+        this.aggregatePositions = new AtomicLongArray(capacity);
+        this.symbolPositions = new AtomicLongArray[16];
+        this.rejects = new AtomicLongArray(REASONS.length);
+    }
+    
+    // Returns ACCEPTED or the REJECT_ code of the first limit the order breaks
+    public int check(String traderId, String symbol, Order.Side side, Order.Type type, long price, int quantity) {
+        return check(traders.register(traderId), symbols.register(symbol), side, type, price, quantity);
+    }
+    
+    // trader and symbol are ids in this manager's directories
+    public int check(int trader, int symbol, Order.Side side, Order.Type type, long price, int quantity) {
+        if (quantity <= 0 || (type != Order.Type.MARKET && price <= 0)) {
+            return reject(REJECT_INVALID);
+        }
+        if (trader >= capacity) {
+            return reject(REJECT_TRADER_CAPACITY);
+        }
+        RiskLimits traderLimits = limitsOf(trader);
+        if (quantity > traderLimits.getMaxOrderQuantity()) {
+            return reject(REJECT_ORDER_SIZE);
+        }
+        // A market order's price is unknown until it fills, so only its size is limited
+        if (type != Order.Type.MARKET && price > traderLimits.getMaxOrderNotional() / quantity) {
+            return reject(REJECT_NOTIONAL);
+        }
+        
+        long position = positionsOf(symbol).get(trader);
+        long after = side == Order.Side.BUY ? position + quantity : position - quantity;
+        long growth = Math.abs(after) - Math.abs(position);
+        if (growth > 0) {
+            if (Math.abs(after) > traderLimits.getMaxSymbolPosition()) {
+                return reject(REJECT_SYMBOL_POSITION);
+            }
+            if (aggregatePositions.get(trader) + growth > traderLimits.getMaxAggregatePosition()) {
+                return reject(REJECT_AGGREGATE_POSITION);
+            }
+        }
+        
+        // Checked last so that only accepted orders use up the trader's rate
+        if (!acquireRate(trader, traderLimits.getMaxOrdersPerSecond())) {
+            return reject(REJECT_RATE);
+        }
+        return ACCEPTED;
+    }
+    
+    // Fixed one-second windows, CAS on the packed window word
+    private boolean acquireRate(int trader, int maxOrdersPerSecond) {
+        long second = (System.nanoTime() / NANOS_PER_SECOND) & 0xFFFFFFFFL;
+        while (true) {
+            long window = rateWindows.get(trader);
+            boolean current = window >>> 32 == second;
+            if (current && (int) window >= maxOrdersPerSecond) {
+                return false;
+            }
+            long next = current ? window + 1 : second << 32 | 1;
+            if (rateWindows.compareAndSet(trader, window, next)) {
+                return true;
+            }
+        }
+    }
+    
+    private int reject(int reason) {
+        rejects.getAndIncrement(reason);
+        return reason;
+    }
+    
+    // Matching thread of the trade's symbol. Trades of an engine sharing this manager's directories
+    // carry their ids; names are only resolved for trades from elsewhere.
+    public void onTrade(Trade trade) {
+        int symbol = trade.getSymbolIndex();
+        int buyer = trade.getBuyTraderIndex();
+        int seller = trade.getSellTraderIndex();
+        if (symbol < 0 || buyer < 0 || seller < 0) {
+            symbol = symbols.register(trade.getSymbol());
+            buyer = traders.register(trade.getBuyTraderId());
+            seller = traders.register(trade.getSellTraderId());
+        }
+        AtomicLongArray positions = positionsOf(symbol);
+        applyFill(positions, buyer, trade.getQuantity());
+        applyFill(positions, seller, -trade.getQuantity());
+    }
+    
+    private void applyFill(AtomicLongArray positions, int trader, long delta) {
+        if (trader >= capacity) return;
+        long before = positions.get(trader);
+        long after = before + delta;
+        positions.lazySet(trader, after);
+        long change = Math.abs(after) - Math.abs(before);
+        if (change != 0) {
+            aggregatePositions.getAndAdd(trader, change);
+        }
+    }
+    
+    private AtomicLongArray positionsOf(int symbol) {
+        AtomicLongArray[] current = symbolPositions;
+        if (symbol < current.length && current[symbol] != null) {
+            return current[symbol];
+        }
+        return addPositions(symbol);
+    }
+    
+    // Republishing the array makes the new row visible to readers that find it missing
+    private synchronized AtomicLongArray addPositions(int symbol) {
+        AtomicLongArray[] current = symbolPositions;
+        if (symbol >= current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, symbol + 1));
+        }
+        if (current[symbol] == null) {
+            current[symbol] = new AtomicLongArray(capacity);
+        }
+        symbolPositions = current;
+        return current[symbol];
+    }
+    
+    // Matching thread of the symbol, e.g. while its shard is checkpointed: each trader's non-zero
+    // position in it. Aggregates are not visited; restorePosition() rebuilds them.
+    public void forEachPosition(String symbol, ObjLongConsumer<String> action) {
+        int id = symbols.idOf(symbol);
+        AtomicLongArray[] current = symbolPositions;
+        if (id < 0 || id >= current.length || current[id] == null) return;
+        AtomicLongArray positions = current[id];
+        int count = Math.min(capacity, traders.size());
+        for (int trader = 0; trader < count; trader++) {
+            long position = positions.get(trader);
+            if (position != 0) {
+                action.accept(traders.nameOf(trader), position);
+            }
+        }
+    }
+    
+    // Before replay: sets a position loaded from a checkpoint and moves the trader's aggregate with it
+    public void restorePosition(String traderId, String symbol, long position) {
+        int trader = traders.register(traderId);
+        AtomicLongArray positions = positionsOf(symbols.register(symbol));
+        if (trader < capacity) {
+            applyFill(positions, trader, position - positions.get(trader));
+        }
+    }
+    
+    boolean uses(Directory symbols, Directory traders) {
+        return this.symbols == symbols && this.traders == traders;
+    }
+    
+    private RiskLimits limitsOf(int trader) {
+        RiskLimits traderLimits = limits.get(trader);
+        return traderLimits != null ? traderLimits : defaultLimits;
+    }
+    
+    public void setDefaultLimits(RiskLimits defaultLimits) {
+        this.defaultLimits = defaultLimits;
+    }
+    
+    // Overrides the defaults for one trader; null restores them
+    public void setLimits(String traderId, RiskLimits traderLimits) {
+        int trader = traders.register(traderId);
+        if (trader >= capacity) {
+            throw new IllegalStateException("Risk manager is full (" + capacity + " traders)");
+        }
+        limits.set(trader, traderLimits);
+    }
+    
+    public long getPosition(String traderId, String symbol) {
+        int trader = traders.idOf(traderId);
+        int id = symbols.idOf(symbol);
+        AtomicLongArray[] current = symbolPositions;
+        if (trader < 0 || trader >= capacity || id < 0 || id >= current.length || current[id] == null) {
+            return 0;
+        }
+        return current[id].get(trader);
+    }
+    
+    public long getAggregatePosition(String traderId) {
+        int trader = traders.idOf(traderId);
+        return trader >= 0 && trader < capacity ? aggregatePositions.get(trader) : 0;
+    }
+    
+    public long getRejects(int reason) {
+        return rejects.get(reason);
+    }
+    
+    public long getRejects() {
+        long total = 0;
+        for (int i = 1; i < REASONS.length; i++) {
+            total += rejects.get(i);
+        }
+        return total;
+    }
+    
+    public static String describe(int reason) {
+        return reason >= 0 && reason < REASONS.length ? REASONS[reason] : "unknown (" + reason + ")";
+    }
+    
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(getRejects()).append(" rejected");
+        for (int i = 1; i < REASONS.length; i++) {
+            if (rejects.get(i) > 0) {
+                summary.append(", ").append(REASONS[i]).append(' ').append(rejects.get(i));
+            }
+        }
+        return summary.toString();
+    }
+}
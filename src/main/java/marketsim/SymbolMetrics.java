@@ -0,0 +1,43 @@
+package marketsim;
+
+// Counters and depth of one book. The book's owner thread does the counting; rates are derived
+// from the running totals each time sample() is called.
+public class SymbolMetrics implements SymbolMetricsMBean {
+    private final OrderBook book;
+    private long lastSampleNanos;
+    private long lastOrders, lastTrades, lastCancels; // Sampling thread only
+    private volatile double ordersPerSecond, tradesPerSecond, cancelsPerSecond;
+    
+    public SymbolMetrics(OrderBook book) {
+        this.book = book;
+        this.lastSampleNanos = System.nanoTime();
+    }
+    
+    // Called from a single thread, about once a second
+    void sample(long nowNanos) {
+        double seconds = (nowNanos - lastSampleNanos) / 1e9;
+        if (seconds <= 0) return;
+        long orders = book.getOrdersReceived();
+        long trades = book.getTradesExecuted();
+        long cancels = book.getCancelsApplied();
+        ordersPerSecond = (orders - lastOrders) / seconds;
+        tradesPerSecond = (trades - lastTrades) / seconds;
+        cancelsPerSecond = (cancels - lastCancels) / seconds;
+        lastOrders = orders;
+        lastTrades = trades;
+        lastCancels = cancels;
+        lastSampleNanos = nowNanos;
+    }
+    
+    @Override public String getSymbol() { return book.getSymbol(); }
+    @Override public long getOrders() { return book.getOrdersReceived(); }
+    @Override public long getTrades() { return book.getTradesExecuted(); }
+    @Override public long getCancels() { return book.getCancelsApplied(); }
+    @Override public double getOrdersPerSecond() { return ordersPerSecond; }
+    @Override public double getTradesPerSecond() { return tradesPerSecond; }
+    @Override public double getCancelsPerSecond() { return cancelsPerSecond; }
+    @Override public int getRestingOrders() { return book.getActiveOrderCount(); }
+    @Override public int getBidLevels() { return book.getBidLevelCount(); }
+    @Override public int getAskLevels() { return book.getAskLevelCount(); }
+    @Override public int getFreeRecords() { return book.getFreeRecordCount(); }
+}
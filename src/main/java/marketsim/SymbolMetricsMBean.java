@@ -0,0 +1,26 @@
+package marketsim;
+
+// JMX view of one book's SymbolMetrics
+public interface SymbolMetricsMBean {
+    String getSymbol();
+    
+    long getOrders();
+    
+    long getTrades();
+    
+    long getCancels();
+    
+    double getOrdersPerSecond();
+    
+    double getTradesPerSecond();
+    
+    double getCancelsPerSecond();
+    
+    int getRestingOrders();
+    
+    int getBidLevels();
+    
+    int getAskLevels();
+    
+    int getFreeRecords();
+}
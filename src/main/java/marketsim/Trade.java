@@ -0,0 +1,89 @@
+package marketsim;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Trade {
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+    
+    // Not final so that TradeBuffer can recycle instances
+    private long tradeId;
+    private long buyOrderId;
+    private long sellOrderId;
+    private String buyTraderId;
+    private String sellTraderId;
+    private String symbol;
+    private long price; // In ticks
+    private int quantity;
+    private long timestamp; // System.nanoTime() at execution
+    // Engine directory ids of the symbol and traders, so per-symbol and per-trader state downstream
+    // is an array read; -1 for trades of books outside an engine
+    private int symbolIndex;
+    private int buyTraderIndex;
+    private int sellTraderIndex;
+    
+    public Trade(long buyOrderId, long sellOrderId, String buyTraderId, 
+                 String sellTraderId, String symbol, long price, int quantity) {
+        set(nextId(), buyOrderId, sellOrderId, buyTraderId, sellTraderId, symbol, price, quantity, System.nanoTime());
+    }
+    
+    Trade() {
+    }
+    
+    void set(long tradeId, long buyOrderId, long sellOrderId, String buyTraderId,
+             String sellTraderId, String symbol, long price, int quantity, long timestamp) {
+        this.tradeId = tradeId;
+        this.buyOrderId = buyOrderId;
+        this.sellOrderId = sellOrderId;
+        this.buyTraderId = buyTraderId;
+        this.sellTraderId = sellTraderId;
+        this.symbol = symbol;
+        this.price = price;
+        this.quantity = quantity;
+        this.timestamp = timestamp;
+        this.symbolIndex = -1;
+        this.buyTraderIndex = -1;
+        this.sellTraderIndex = -1;
+    }
+    
+    void setIndexes(int symbolIndex, int buyTraderIndex, int sellTraderIndex) {
+        this.symbolIndex = symbolIndex;
+        this.buyTraderIndex = buyTraderIndex;
+        this.sellTraderIndex = sellTraderIndex;
+    }
+    
+    void copyFrom(Trade other) {
+        set(other.tradeId, other.buyOrderId, other.sellOrderId, other.buyTraderId, other.sellTraderId,
+                other.symbol, other.price, other.quantity, other.timestamp);
+        setIndexes(other.symbolIndex, other.buyTraderIndex, other.sellTraderIndex);
+    }
+    
+    public static long nextId() {
+        return NEXT_ID.getAndIncrement();
+    }
+    
+    // Listeners receive recycled instances; copy a trade to keep it past the callback
+    public Trade copy() {
+        Trade copy = new Trade();
+        copy.copyFrom(this);
+        return copy;
+    }
+    
+    public long getTradeId() { return tradeId; }
+    public long getBuyOrderId() { return buyOrderId; }
+    public long getSellOrderId() { return sellOrderId; }
+    public String getBuyTraderId() { return buyTraderId; }
+    public String getSellTraderId() { return sellTraderId; }
+    public String getSymbol() { return symbol; }
+    public long getPrice() { return price; }
+    public int getQuantity() { return quantity; }
+    public long getTimestamp() { return timestamp; }
+    public int getSymbolIndex() { return symbolIndex; }
+    public int getBuyTraderIndex() { return buyTraderIndex; }
+    public int getSellTraderIndex() { return sellTraderIndex; }
+    
+    @Override
+    public String toString() {
+        return String.format("Trade{id=%d, symbol='%s', price=%d, qty=%d, buyer='%s', seller='%s'}",
+                tradeId, symbol, price, quantity, buyTraderId, sellTraderId);
+    }
+}
@@ -0,0 +1,8 @@
+package marketsim;
+
+// Receives trades in batches on its own dispatcher thread. The array and the Trade objects in it
+// are reused once the callback returns; copy anything that must outlive it.
+@FunctionalInterface
+public interface TradeBatchListener {
+    void onTrades(Trade[] trades, int count);
+}
@@ -0,0 +1,55 @@
+package marketsim;
+
+// Reusable trade output of the matching thread; clear() recycles the Trade instances.
+// Trades are stamped here: live buffers use System.nanoTime() and the global trade id sequence, while
+// a replay buffer reads its virtual clock and numbers its own trades, so a replay is repeatable.
+public class TradeBuffer {
+    private final VirtualClock clock; // Null for live matching
+    private Trade[] trades;
+    private int size;
+    private long lastTradeId; // Replay buffers only
+    
+    public TradeBuffer() {
+        this(null);
+    }
+    
+    public TradeBuffer(VirtualClock clock) {
+        this.clock = clock;
+        this.trades = new Trade[64];
+    }
+    
+    // The caller stamps the directory ids with setIndexes() on the returned trade
+    Trade add(long buyOrderId, long sellOrderId, String buyTraderId, String sellTraderId,
+              String symbol, long price, int quantity) {
+        if (size == trades.length) {
+            Trade[] grown = new Trade[size * 2];
+            System.arraycopy(trades, 0, grown, 0, size);
+            trades = grown;
+        }
+        Trade trade = trades[size];
+        if (trade == null) {
+            trade = new Trade();
+            trades[size] = trade;
+        }
+        if (clock == null) {
+            trade.set(Trade.nextId(), buyOrderId, sellOrderId, buyTraderId, sellTraderId, symbol, price, quantity,
+                    System.nanoTime());
+        } else {
+            trade.set(++lastTradeId, buyOrderId, sellOrderId, buyTraderId, sellTraderId, symbol, price, quantity,
+                    clock.nanoTime());
+        }
+        size++;
+        return trade;
+    }
+    
+    public Trade get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return trades[index];
+    }
+    
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public void clear() { size = 0; }
+}
@@ -0,0 +1,198 @@
+package marketsim;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Decouples one trade listener from the matching threads. Every shard writes into its own
+// single-producer lane of preallocated Trade slots; the dispatcher thread drains the lanes and
+// hands the listener batches of copies.
+public class TradeDispatcher {
+    private static final int MAX_BATCH = 256;
+    
+    private final TradeBatchListener listener;
+    private final BackpressurePolicy policy;
+    private final Lane[] lanes;
+    private final Trade[] batch; // Dispatcher thread only
+    private final Thread thread;
+    private final EventLog log;
+    private final AtomicLong delivered;
+    private final LatencyHistogram deliveryLatency; // Match to listener, recorded by the dispatcher thread
+    private volatile long lastBatchLagNanos;
+    private volatile boolean running;
+    
+    // One lane of capacity slots per shard; capacity must be a power of two
+    public TradeDispatcher(String name, TradeBatchListener listener, int shardCount, int capacity,
+                           BackpressurePolicy policy, EventLog log) {
+        this.log = log;
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Listener buffer capacity must be a power of two: " + capacity);
+        }
+        this.listener = listener;
+        this.policy = policy;
+        this.lanes = new Lane[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            lanes[i] = new Lane(capacity);
+        }
+        this.batch = new Trade[MAX_BATCH];
+        for (int i = 0; i < MAX_BATCH; i++) {
+            batch[i] = new Trade();
+        }
+        this.delivered = new AtomicLong();
+        this.deliveryLatency = new LatencyHistogram();
+        this.running = true;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    // Called by the matching thread of the given shard
+    public void publish(int shard, Trade trade) {
+        Lane lane = lanes[shard];
+        long sequence = lane.produced;
+        if (sequence - lane.consumed.get() >= lane.slots.length) {
+            switch (policy) {
+                case DROP:
+                    lane.dropped.lazySet(lane.dropped.get() + 1);
+                    return;
+                case BLOCK:
+                    while (sequence - lane.consumed.get() >= lane.slots.length && running) {
+                        LockSupport.parkNanos(1000);
+                    }
+                    break;
+                case CONFLATE:
+                    break;
+            }
+        }
+        
+        // Claim before writing so a reader of an overwritten slot can tell its copy may be torn
+        lane.claimed.set(sequence + 1);
+        VarHandle.storeStoreFence();
+        lane.slots[(int) sequence & lane.mask].copyFrom(trade);
+        lane.produced = sequence + 1;
+        lane.published.lazySet(sequence + 1);
+    }
+    
+    private void run() {
+        int idle = 0;
+        while (running || getPending() > 0) {
+            int drained = 0;
+            for (Lane lane : lanes) {
+                drained += drain(lane);
+            }
+            if (drained == 0) {
+                WaitStrategy.PARKING.idle(idle++);
+            } else {
+                idle = 0;
+            }
+        }
+    }
+    
+    private int drain(Lane lane) {
+        long next = lane.next;
+        long available = lane.published.get();
+        int capacity = lane.slots.length;
+        if (available - next > capacity) {
+            // Only under CONFLATE: the producer lapped us, skip what was overwritten
+            lane.conflated.lazySet(lane.conflated.get() + (available - capacity - next));
+            next = available - capacity;
+        }
+        
+        int count = 0;
+        while (next < available && count < MAX_BATCH) {
+            batch[count].copyFrom(lane.slots[(int) next & lane.mask]);
+            if (policy == BackpressurePolicy.CONFLATE) {
+                VarHandle.loadLoadFence();
+                if (lane.claimed.get() > next + capacity) break; // Overwritten while copying
+            }
+            count++;
+            next++;
+        }
+        lane.next = next;
+        lane.consumed.lazySet(next);
+        
+        if (count > 0) {
+            long now = System.nanoTime();
+            lastBatchLagNanos = now - batch[0].getTimestamp();
+            for (int i = 0; i < count; i++) {
+                deliveryLatency.record(now - batch[i].getTimestamp());
+            }
+            try {
+                listener.onTrades(batch, count);
+            } catch (Exception e) {
+                log.log(EventLog.Level.ERROR, "Error notifying trade listener: {}", e);
+            }
+            delivered.lazySet(delivered.get() + count);
+        }
+        return count;
+    }
+    
+    // Lets the dispatcher deliver what is already buffered, then stops its thread
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        running = false;
+        thread.join(timeoutMillis);
+    }
+    
+    // Trades published but not yet delivered, across all shards
+    public long getPending() {
+        long pending = 0;
+        for (Lane lane : lanes) {
+            pending += Math.min(lane.published.get() - lane.consumed.get(), lane.slots.length);
+        }
+        return pending;
+    }
+    
+    public long getDelivered() {
+        return delivered.get();
+    }
+    
+    public long getDropped() {
+        long dropped = 0;
+        for (Lane lane : lanes) {
+            dropped += lane.dropped.get();
+        }
+        return dropped;
+    }
+    
+    public long getConflated() {
+        long conflated = 0;
+        for (Lane lane : lanes) {
+            conflated += lane.conflated.get();
+        }
+        return conflated;
+    }
+    
+    // Age of the oldest trade in the most recent batch when it was handed to the listener
+    public long getLastBatchLagNanos() {
+        return lastBatchLagNanos;
+    }
+    
+    // Time from the match to the hand-over to the listener, per trade
+    public LatencyHistogram getDeliveryLatency() {
+        return deliveryLatency;
+    }
+    
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+    
+    private static class Lane {
+        final Trade[] slots;
+        final int mask;
+        long produced; // Producer only
+        long next; // Consumer only
+        final AtomicLong claimed = new AtomicLong();
+        final AtomicLong published = new AtomicLong();
+        final AtomicLong consumed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong(); // Written by the producer only
+        final AtomicLong conflated = new AtomicLong(); // Written by the consumer only
+        
+        Lane(int capacity) {
+            this.slots = new Trade[capacity];
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new Trade();
+            }
+            this.mask = capacity - 1;
+        }
+    }
+}
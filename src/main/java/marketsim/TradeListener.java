@@ -0,0 +1,7 @@
+package marketsim;
+
+// The Trade is recycled after the callback returns; use trade.copy() to keep it
+@FunctionalInterface
+public interface TradeListener {
+    void onTrade(Trade trade);
+}
\ No newline at end of file
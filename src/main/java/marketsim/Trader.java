@@ -0,0 +1,74 @@
+package marketsim;
+
+import java.util.SplittableRandom;
+
+// One simulated trader. It owns no thread: a LoadGenerator event loop asks it for its next action
+// when its scheduled arrival time comes up. Its random stream is seeded from the run seed and its
+// index, so the orders it sends don't depend on which generator thread drives it.
+public class Trader {
+    public enum Action { PASSIVE, AGGRESSIVE, CANCEL }
+    
+    private static final int MAX_LIVE_ORDERS = 16;
+    
+    private final String traderId;
+    private final SplittableRandom random;
+    private final long[] liveOrderIds; // Ring of recently sent orders it may cancel
+    private final int[] liveSymbols; // Engine symbol ids
+    private int liveCount;
+    private int liveHead;
+    long nextArrivalNanos; // Intended send time of the next action; owned by the event loop
+    int id; // Engine trader directory id, resolved when the generator starts
+    
+    public Trader(String traderId, long seed) {
+        this.traderId = traderId;
+        this.random = new SplittableRandom(seed);
+        this.liveOrderIds = new long[MAX_LIVE_ORDERS];
+        this.liveSymbols = new int[MAX_LIVE_ORDERS];
+    }
+    
+    public String getTraderId() {
+        return traderId;
+    }
+    
+    SplittableRandom random() {
+        return random;
+    }
+    
+    // Exponential gap of a Poisson arrival process with the given mean
+    long nextGapNanos(double meanGapNanos) {
+        return (long) (-Math.log(1.0 - random.nextDouble()) * meanGapNanos);
+    }
+    
+    Action nextAction(double cancelRatio, double aggressiveRatio) {
+        double draw = random.nextDouble();
+        if (draw < cancelRatio && liveCount > 0) {
+            return Action.CANCEL;
+        }
+        return draw < cancelRatio + aggressiveRatio ? Action.AGGRESSIVE : Action.PASSIVE;
+    }
+    
+    void remember(int symbol, long orderId) {
+        int slot = (liveHead + liveCount) % MAX_LIVE_ORDERS;
+        liveOrderIds[slot] = orderId;
+        liveSymbols[slot] = symbol;
+        if (liveCount < MAX_LIVE_ORDERS) {
+            liveCount++;
+        } else {
+            liveHead = (liveHead + 1) % MAX_LIVE_ORDERS;
+        }
+    }
+    
+    // Oldest remembered order; it may already have filled, in which case the cancel is rejected
+    long oldestOrderId() {
+        return liveOrderIds[liveHead];
+    }
+    
+    int oldestSymbol() {
+        return liveSymbols[liveHead];
+    }
+    
+    void forgetOldest() {
+        liveHead = (liveHead + 1) % MAX_LIVE_ORDERS;
+        liveCount--;
+    }
+}
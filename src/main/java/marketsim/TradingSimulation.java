@@ -0,0 +1,134 @@
+package marketsim;
+
+import javax.management.JMException;
+import java.util.concurrent.TimeUnit;
+
+public class TradingSimulation {
+    // Optional arguments: ordersPerSecond traders seconds seed
+    public static void main(String[] args) {
+        int ordersPerSecond = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int traderCount = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        
+        System.out.println("Starting Order Matching Engine Simulation...");
+        
+        // Create trading symbols
+        String[] symbols = {"AAPL", "GOOGL", "MSFT", "TSLA", "AMZN"};
+        
+        // One matching shard per core, up to one per symbol
+        int cores = Runtime.getRuntime().availableProcessors();
+        int shardCount = Math.min(symbols.length, cores);
+        MatchingEngine engine = new MatchingEngine(shardCount);
+        for (String symbol : symbols) {
+            engine.registerInstrument(symbol, 0.01);
+            engine.registerSymbol(symbol);
+        }
+        
+        // Pre-trade limits per trader: order size, notional in ticks, positions in shares, orders/s
+        RiskManager risk = new RiskManager(new RiskLimits(1_000, 20_000_000, 20_000, 50_000, 50), traderCount,
+                engine.getSymbolDirectory(), engine.getTraderDirectory());
+        engine.setRiskManager(risk);
+        
+        // Trade statistics: one-second OHLCV bars per symbol, the last minute kept, on their own listener thread
+        BarAggregator bars = new BarAggregator(TimeUnit.SECONDS.toNanos(1), 60);
+        engine.addTradeListener(bars, 1 << 14, BackpressurePolicy.BLOCK);
+        
+        // market data listener; formatted and printed by the engine's log writer thread
+        EventLog log = engine.getEventLog();
+        engine.addMarketDataListener(snapshot -> {
+            if (!snapshot.isEmpty()) {
+                LogEvent event = log.claim(EventLog.Level.INFO, "MARKET DATA [{}]: Best Bid={}, Best Ask={}, Spread={}");
+                if (event != null) {
+                    Instrument instrument = engine.getInstrument(snapshot.getSymbol());
+                    log.publish(event.add(snapshot.getSymbol())
+                                     .add(instrument.toPrice(snapshot.getBestBidPrice()), 2)
+                                     .add(instrument.toPrice(snapshot.getBestAskPrice()), 2)
+                                     .add(instrument.toPrice(snapshot.getSpread()), 2));
+                }
+            }
+        });
+        
+        // Start the engine; metrics are visible in JConsole under marketsim
+        engine.start();
+        try {
+            engine.registerMBeans("TradingSimulation");
+        } catch (JMException e) {
+            log.log(EventLog.Level.ERROR, "Error registering engine metrics: {}", e);
+        }
+        
+        // Thousands of simulated traders, driven open-loop by one event loop per two cores
+        LoadGenerator load = new LoadGenerator(engine, symbols, traderCount, ordersPerSecond,
+                                               Math.max(1, cores / 2), seed);
+        load.start();
+        
+        // Run simulation
+        try {
+            System.out.printf("Simulation running for %d seconds at %d orders/s from %d traders...%n",
+                            seconds, ordersPerSecond, traderCount);
+            Thread.sleep(seconds * 1000L);
+            
+            // Stop all traders
+            System.out.println("Stopping traders...");
+            load.stop();
+            
+            // Wait a bit for final trades
+            Thread.sleep(2000);
+            
+            // Print final statistics
+            System.out.println("\n=== SIMULATION RESULTS ===");
+            System.out.printf("Total Trades Executed: %d%n", bars.getTotalTradeCount());
+            System.out.printf("Total Volume Traded: %d shares%n", bars.getTotalVolume());
+            System.out.print(load.report());
+            System.out.println("Risk checks: " + risk.summary());
+            EngineMetrics metrics = engine.getMetrics();
+            System.out.println("Enqueue to match:  " + metrics.getEnqueueToMatch().summary());
+            System.out.println("Match to listener: " + metrics.getMatchToListener().summary());
+            metrics.getSymbols().forEach((symbol, stats) ->
+                System.out.printf("  %s: %d orders, %d trades, %d cancels, %d bid / %d ask levels%n",
+                                symbol, stats.getOrders(), stats.getTrades(), stats.getCancels(),
+                                stats.getBidLevels(), stats.getAskLevels()));
+            
+            System.out.println("\nTrades by Symbol:");
+            for (String symbol : symbols) {
+                Bar last = bars.getLatestBar(symbol);
+                if (last != null) {
+                    Instrument instrument = engine.getInstrument(symbol);
+                    System.out.printf("  %s: %d trades, %d shares, VWAP=%.4f, last bar O=%.2f H=%.2f L=%.2f C=%.2f V=%d%n",
+                                    symbol, bars.getTradeCount(symbol), bars.getVolume(symbol),
+                                    bars.getVwap(symbol) * instrument.getTickSize(),
+                                    instrument.toPrice(last.getOpen()), instrument.toPrice(last.getHigh()),
+                                    instrument.toPrice(last.getLow()), instrument.toPrice(last.getClose()),
+                                    last.getVolume());
+                }
+            }
+            
+            // Print order book sizes
+            System.out.println("\nActive Orders by Symbol:");
+            engine.getOrderBookSizes().forEach((symbol, count) -> 
+                System.out.printf("  %s: %d orders%n", symbol, count));
+            
+            // Show final order book snapshots
+            System.out.println("\nFinal Order Book States:");
+            for (String symbol : symbols) {
+                OrderBookSnapshot snapshot = engine.getOrderBookSnapshot(symbol);
+                if (snapshot != null) {
+                    Instrument instrument = engine.getInstrument(symbol);
+                    System.out.printf("  %s: %d bid levels, %d ask levels, Best Bid=%.2f, Best Ask=%.2f%n",
+                                    symbol, 
+                                    snapshot.getBidDepth(),
+                                    snapshot.getAskDepth(),
+                                    instrument.toPrice(snapshot.getBestBidPrice()),
+                                    instrument.toPrice(snapshot.getBestAskPrice()));
+                }
+            }
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Stop the engine
+            engine.stop();
+            System.out.println("\nSimulation completed!");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package marketsim;
+
+// Replay time source: set to each recorded command's timestamp as it is applied, so everything
+// stamped during a replay carries recorded time instead of wall-clock time. The time is exactly the
+// current command's, never clamped, so a replay stamps the same values however its symbols are
+// partitioned. Owned by one replaying thread.
+public class VirtualClock {
+    private long now;
+    
+    public long nanoTime() {
+        return now;
+    }
+    
+    public void set(long timestamp) {
+        now = timestamp;
+    }
+}
@@ -0,0 +1,42 @@
+package marketsim;
+
+import java.util.concurrent.locks.LockSupport;
+
+// How a draining thread waits for new ring buffer entries; attempt counts consecutive empty polls
+public enum WaitStrategy {
+    // Lowest latency, burns a full core per waiting thread
+    BUSY_SPIN {
+        @Override
+        public void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    YIELDING {
+        @Override
+        public void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    // Spins, then yields, then parks so an idle shard costs almost no CPU
+    PARKING {
+        @Override
+        public void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (attempt < SPIN_TRIES * 2) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+    
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+    
+    public abstract void idle(int attempt);
+}
@@ -0,0 +1,119 @@
+package marketsim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The same order stream must always yield the same trades, however its symbols are partitioned
+class BacktestTest {
+    private static final int SYMBOLS = 5;
+    private static final int ORDERS = 20_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayingTwiceYieldsTheSameChecksum() throws IOException {
+        OrderStream stream = OrderStream.open(write(directory.resolve("session.oms"), 7));
+
+        Backtest.Result first = Backtest.run(stream, new MatchingEngine(), 1, ForkJoinPool.commonPool());
+        Backtest.Result second = Backtest.run(stream, new MatchingEngine(), 1, ForkJoinPool.commonPool());
+
+        assertTrue(first.getTrades() > 0, "the stream should trade");
+        assertEquals(stream.getRecordCount(), first.getCommands());
+        assertSameTrades(first, second);
+    }
+
+    @Test
+    void partitioningDoesNotChangeTheTrades() throws IOException {
+        OrderStream stream = OrderStream.open(write(directory.resolve("session.oms"), 11));
+
+        Backtest.Result whole = Backtest.run(stream, new MatchingEngine(), 1, ForkJoinPool.commonPool());
+        ForkJoinPool pool = new ForkJoinPool(SYMBOLS + 1);
+        try {
+            for (int partitions = 2; partitions <= SYMBOLS + 1; partitions++) {
+                Backtest.Result split = Backtest.run(stream, new MatchingEngine(), partitions, pool);
+                assertSameTrades(whole, split);
+                assertEquals(whole.getCommands(), split.getCommands());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void everyEngineOfARunEachSeesTheSameTrades() throws IOException {
+        OrderStream stream = OrderStream.open(write(directory.resolve("session.oms"), 13));
+
+        List<Backtest.Result> results = Backtest.runEach(stream,
+                List.of(new MatchingEngine(), new MatchingEngine(2), new MatchingEngine(4)), ForkJoinPool.commonPool());
+
+        for (Backtest.Result result : results) {
+            assertSameTrades(results.get(0), result);
+        }
+    }
+
+    @Test
+    void aDifferentStreamYieldsADifferentChecksum() throws IOException {
+        OrderStream one = OrderStream.open(write(directory.resolve("one.oms"), 17));
+        OrderStream other = OrderStream.open(write(directory.resolve("other.oms"), 19));
+
+        long checksum = Backtest.run(one, new MatchingEngine(), 1, ForkJoinPool.commonPool()).getChecksum();
+        long otherChecksum = Backtest.run(other, new MatchingEngine(), 1, ForkJoinPool.commonPool()).getChecksum();
+
+        assertTrue(checksum != otherChecksum, "checksum should depend on the trades");
+    }
+
+    private static void assertSameTrades(Backtest.Result expected, Backtest.Result actual) {
+        assertEquals(expected.getChecksum(), actual.getChecksum(), "checksum");
+        assertEquals(expected.getTrades(), actual.getTrades(), "trades");
+        assertEquals(expected.getVolume(), actual.getVolume(), "volume");
+        assertEquals(expected.getNotional(), actual.getNotional(), "notional");
+    }
+
+    // A seeded session of every command kind: resting limits, crossing IOCs, cancels, amends and
+    // cancel-alls of recent orders
+    private static Path write(Path file, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] recent = new long[64];
+        String[] recentSymbols = new String[recent.length];
+        long timestamp = 0;
+        try (OrderStream.Writer writer = OrderStream.create(file)) {
+            for (long orderId = 1; orderId <= ORDERS; orderId++) {
+                timestamp += 1 + random.nextInt(10_000);
+                String symbol = "SYM" + random.nextInt(SYMBOLS);
+                String trader = "T" + random.nextInt(20);
+                Order.Side side = random.nextBoolean() ? Order.Side.BUY : Order.Side.SELL;
+                int quantity = 1 + random.nextInt(100);
+                int kind = random.nextInt(100);
+                int slot = random.nextInt(recent.length);
+                if (kind < 15 && recent[slot] != 0) {
+                    writer.appendCancel(timestamp, recent[slot], recentSymbols[slot]);
+                } else if (kind < 20 && recent[slot] != 0) {
+                    writer.appendAmend(timestamp, recent[slot], recentSymbols[slot], 10_000 + random.nextInt(21) - 10,
+                            quantity);
+                } else if (kind < 21) {
+                    writer.appendCancelAll(timestamp, symbol, trader);
+                } else if (kind < 45) {
+                    long price = side == Order.Side.BUY ? 10_005 : 9_995;
+                    writer.appendNew(timestamp, orderId, symbol, trader, side, Order.Type.IOC, price, quantity);
+                } else {
+                    long offset = 1 + random.nextInt(10);
+                    long price = side == Order.Side.BUY ? 10_000 - offset : 10_000 + offset;
+                    writer.appendNew(timestamp, orderId, symbol, trader, side, Order.Type.LIMIT, price, quantity);
+                    recent[slot] = orderId;
+                    recentSymbols[slot] = symbol;
+                }
+            }
+        }
+        return file;
+    }
+}
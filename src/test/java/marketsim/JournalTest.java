@@ -0,0 +1,286 @@
+package marketsim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Journal records survive a reopen, and an engine rebuilt from its journal (and checkpoint) has the
+// same books and positions as the one that wrote it
+class JournalTest {
+    private static final int SHARDS = 2;
+    private static final String[] SYMBOLS = {"AAA", "BBB", "CCC"};
+    private static final String[] TRADERS = {"T0", "T1", "T2", "T3", "T4", "T5"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsReplayInOrderAfterReopen() throws IOException {
+        Journal journal = new Journal(directory, 0, Journal.DEFAULT_SEGMENT_SIZE, 1);
+        journal.appendNew(100, 1, "AAA", "T0", Order.Side.BUY, Order.Type.LIMIT, 10_000, 50);
+        journal.appendCancel(200, 1, "AAA");
+        journal.appendCancelAll(300, "AAA", "T0");
+        journal.appendAmend(400, 2, "AAA", 10_001, 20);
+        journal.close();
+
+        Recorder records = new Recorder();
+        assertEquals(4, Journal.replay(directory, 0, records));
+        assertEquals(List.of(
+                "1 NEW 100 1 AAA T0 BUY LIMIT 10000 50",
+                "2 CANCEL 200 1 AAA",
+                "3 CANCEL_ALL 300 AAA T0",
+                "4 AMEND 400 2 AAA 10001 20"), records.records);
+
+        Journal reopened = new Journal(directory, 0, Journal.DEFAULT_SEGMENT_SIZE, 1);
+        assertEquals(4, reopened.getSequence());
+        reopened.appendCancel(500, 2, "AAA");
+        reopened.close();
+        Recorder tail = new Recorder();
+        assertEquals(1, Journal.replay(directory, 0, 4, tail));
+        assertEquals(List.of("5 CANCEL 500 2 AAA"), tail.records);
+    }
+
+    @Test
+    void tornLastRecordIsDroppedAndOverwritten() throws IOException {
+        Journal journal = new Journal(directory, 0, Journal.DEFAULT_SEGMENT_SIZE, 1);
+        for (int i = 1; i <= 3; i++) {
+            journal.appendNew(i, i, "AAA", "T0", Order.Side.SELL, Order.Type.LIMIT, 10_000 + i, 10);
+        }
+        journal.close();
+        // The length is written last, so a record cut short by a crash reads as a zero length
+        tearLastRecord(Journal.segmentFiles(directory, 0).get(0));
+
+        Recorder records = new Recorder();
+        assertEquals(2, Journal.replay(directory, 0, records));
+        assertEquals("2 NEW 2 2 AAA T0 SELL LIMIT 10002 10", records.records.get(1));
+
+        Journal reopened = new Journal(directory, 0, Journal.DEFAULT_SEGMENT_SIZE, 1);
+        assertEquals(2, reopened.getSequence());
+        reopened.appendCancel(4, 1, "AAA");
+        reopened.close();
+        Recorder repaired = new Recorder();
+        assertEquals(3, Journal.replay(directory, 0, repaired));
+        assertEquals("3 CANCEL 4 1 AAA", repaired.records.get(2));
+    }
+
+    @Test
+    void recordsRollOverIntoNewSegments() throws IOException {
+        int segmentSize = 4096;
+        Journal journal = new Journal(directory, 0, segmentSize, 0);
+        for (int i = 1; i <= 500; i++) {
+            journal.appendNew(i, i, "AAA", "T" + i % 7, Order.Side.BUY, Order.Type.LIMIT, 10_000, i);
+        }
+        journal.close();
+        int segments = Journal.segmentFiles(directory, 0).size();
+        assertTrue(segments > 5, "expected several segments, got " + segments);
+
+        Recorder all = new Recorder();
+        assertEquals(500, Journal.replay(directory, 0, all));
+        for (int i = 0; i < 500; i++) {
+            assertTrue(all.records.get(i).startsWith((i + 1) + " NEW " + (i + 1) + " "), all.records.get(i));
+        }
+        Recorder tail = new Recorder();
+        assertEquals(80, Journal.replay(directory, 0, 420, tail));
+        assertTrue(tail.records.get(0).startsWith("421 NEW"), tail.records.get(0));
+
+        Journal reopened = new Journal(directory, 0, segmentSize, 0);
+        assertEquals(500, reopened.getSequence());
+        reopened.appendCancel(501, 1, "AAA");
+        reopened.close();
+        assertEquals(501, Journal.replay(directory, 0, new Recorder()));
+    }
+
+    @Test
+    void engineRebuildsBooksAndPositionsFromItsJournal() throws IOException {
+        MatchingEngine original = newEngine();
+        original.openJournal(directory, 16);
+        original.start();
+        trade(original, 1, 3_000);
+        original.stop();
+        assertTrue(original.getOrderBookSizes().values().stream().mapToInt(Integer::intValue).sum() > 0);
+        assertTrue(original.getRiskManager().getAggregatePosition("T0") > 0);
+
+        MatchingEngine restored = newEngine();
+        assertTrue(restored.openJournal(directory, 16) > 0);
+        assertSameState(original, restored);
+
+        // Cancels carry their enqueue time like every other record, so time never runs backwards
+        for (int shard = 0; shard < SHARDS; shard++) {
+            Recorder records = new Recorder();
+            Journal.replay(directory, shard, records);
+            for (int i = 1; i < records.timestamps.size(); i++) {
+                assertTrue(records.timestamps.get(i) >= records.timestamps.get(i - 1),
+                        "timestamp went backwards at " + records.records.get(i));
+            }
+        }
+    }
+
+    @Test
+    void engineRestoresFromCheckpointPlusJournalTail() throws IOException {
+        MatchingEngine original = newEngine();
+        original.openJournal(directory, 16);
+        original.start();
+        trade(original, 2, 2_000);
+        original.checkpoint(directory).join();
+        trade(original, 3, 500);
+        original.stop();
+
+        MatchingEngine fromJournal = newEngine();
+        long fullReplay = fromJournal.openJournal(directory, 16);
+        MatchingEngine fromCheckpoint = newEngine();
+        assertTrue(fromCheckpoint.loadCheckpoint(directory) > 0, "checkpoint should hold resting orders");
+        long tailReplay = fromCheckpoint.openJournal(directory, 16);
+
+        assertTrue(tailReplay < fullReplay, "tail " + tailReplay + " of " + fullReplay + " records");
+        assertSameState(original, fromJournal);
+        assertSameState(original, fromCheckpoint);
+    }
+
+    @Test
+    void recordThatFailsToReplayIsSkipped() throws IOException {
+        Journal journal = new Journal(directory, 0, Journal.DEFAULT_SEGMENT_SIZE, 1);
+        journal.appendNew(1, 1, "AAA", "T0", Order.Side.BUY, Order.Type.LIMIT, 10_000, 10);
+        // Far outside the window the first bid opened, so the book refuses it
+        journal.appendNew(2, 2, "AAA", "T0", Order.Side.BUY, Order.Type.LIMIT, 10_000_000_000L, 10);
+        journal.appendNew(3, 3, "AAA", "T1", Order.Side.BUY, Order.Type.LIMIT, 9_999, 20);
+        journal.close();
+
+        MatchingEngine engine = new MatchingEngine(1);
+        engine.registerSymbol("AAA");
+        assertEquals(3, engine.openJournal(directory, 1));
+
+        OrderBookSnapshot book = engine.getOrderBookSnapshot("AAA");
+        assertEquals(2, book.getBidDepth());
+        assertEquals(10_000, book.getBidPrice(0));
+        assertEquals(9_999, book.getBidPrice(1));
+        assertEquals(30, book.getBidQuantity(0) + book.getBidQuantity(1));
+    }
+
+    private static MatchingEngine newEngine() {
+        MatchingEngine engine = new MatchingEngine(SHARDS);
+        // Registered up front, so every run assigns each symbol to the same shard
+        for (String symbol : SYMBOLS) {
+            engine.registerSymbol(symbol);
+        }
+        engine.setRiskManager(new RiskManager(RiskLimits.UNLIMITED, 16, engine.getSymbolDirectory(),
+                engine.getTraderDirectory()));
+        return engine;
+    }
+
+    // Seeded mix of resting limits, crossing IOCs, cancels, amends and cancel-alls. Returns once every
+    // command has been matched: a cancel-all joined per symbol queues behind all earlier ones.
+    private static void trade(MatchingEngine engine, long seed, int commands) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] recent = new long[32];
+        String[] recentSymbols = new String[recent.length];
+        for (int i = 0; i < commands; i++) {
+            String symbol = SYMBOLS[random.nextInt(SYMBOLS.length)];
+            String trader = TRADERS[random.nextInt(TRADERS.length)];
+            Order.Side side = random.nextBoolean() ? Order.Side.BUY : Order.Side.SELL;
+            int quantity = 1 + random.nextInt(50);
+            int kind = random.nextInt(100);
+            int slot = random.nextInt(recent.length);
+            if (kind < 15 && recent[slot] != 0) {
+                engine.cancelOrderAsync(recentSymbols[slot], recent[slot]);
+            } else if (kind < 20 && recent[slot] != 0) {
+                engine.amendOrderAsync(recentSymbols[slot], recent[slot], 10_000 + random.nextInt(11) - 5, quantity);
+            } else if (kind < 21) {
+                engine.cancelAllAsync(trader, symbol);
+            } else if (kind < 40) {
+                long price = side == Order.Side.BUY ? 10_003 : 9_997;
+                engine.submitOrder(trader, symbol, side, Order.Type.IOC, price, quantity);
+            } else {
+                long offset = random.nextInt(6);
+                long price = side == Order.Side.BUY ? 10_000 - offset : 10_000 + offset;
+                long orderId = engine.submitOrder(trader, symbol, side, Order.Type.LIMIT, price, quantity);
+                recent[slot] = orderId;
+                recentSymbols[slot] = symbol;
+            }
+        }
+        List<CompletableFuture<Integer>> fences = new ArrayList<>();
+        for (String symbol : SYMBOLS) {
+            fences.add(engine.cancelAllAsync("NOBODY", symbol));
+        }
+        fences.forEach(CompletableFuture::join);
+    }
+
+    private static void assertSameState(MatchingEngine expected, MatchingEngine actual) {
+        assertEquals(expected.getOrderBookSizes(), actual.getOrderBookSizes());
+        for (String symbol : SYMBOLS) {
+            assertEquals(depth(expected.getOrderBookSnapshot(symbol)), depth(actual.getOrderBookSnapshot(symbol)),
+                    symbol);
+        }
+        RiskManager expectedRisk = expected.getRiskManager();
+        RiskManager actualRisk = actual.getRiskManager();
+        for (String trader : TRADERS) {
+            for (String symbol : SYMBOLS) {
+                assertEquals(expectedRisk.getPosition(trader, symbol), actualRisk.getPosition(trader, symbol),
+                        trader + " in " + symbol);
+            }
+            assertEquals(expectedRisk.getAggregatePosition(trader), actualRisk.getAggregatePosition(trader), trader);
+        }
+    }
+
+    private static String depth(OrderBookSnapshot book) {
+        return Arrays.toString(book.getBidPrices()) + Arrays.toString(book.getBidQuantities())
+                + Arrays.toString(book.getBidOrderCounts()) + Arrays.toString(book.getAskPrices())
+                + Arrays.toString(book.getAskQuantities()) + Arrays.toString(book.getAskOrderCounts());
+    }
+
+    private static void tearLastRecord(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int last = 0;
+            for (int position = 0; buffer.getInt(position) != 0; position += 4 + buffer.getInt(position)) {
+                last = position;
+            }
+            buffer.putInt(last, 0);
+            buffer.force();
+        }
+    }
+
+    private static final class Recorder implements JournalRecordHandler {
+        final List<String> records = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+
+        @Override
+        public void onNew(long sequence, long timestamp, long orderId, String symbol, String traderId,
+                          Order.Side side, Order.Type type, long price, int quantity) {
+            add(sequence, timestamp, "NEW " + timestamp + " " + orderId + " " + symbol + " " + traderId + " " + side
+                    + " " + type + " " + price + " " + quantity);
+        }
+
+        @Override
+        public void onCancel(long sequence, long timestamp, long orderId, String symbol) {
+            add(sequence, timestamp, "CANCEL " + timestamp + " " + orderId + " " + symbol);
+        }
+
+        @Override
+        public void onCancelAll(long sequence, long timestamp, String symbol, String traderId) {
+            add(sequence, timestamp, "CANCEL_ALL " + timestamp + " " + symbol + " " + traderId);
+        }
+
+        @Override
+        public void onAmend(long sequence, long timestamp, long orderId, String symbol, long price, int quantity) {
+            add(sequence, timestamp, "AMEND " + timestamp + " " + orderId + " " + symbol + " " + price + " " + quantity);
+        }
+
+        private void add(long sequence, long timestamp, String record) {
+            records.add(sequence + " " + record);
+            timestamps.add(timestamp);
+        }
+    }
+}
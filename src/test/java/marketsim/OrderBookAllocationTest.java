@@ -0,0 +1,51 @@
+package marketsim;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The matching path must not allocate once the book is warm: incoming orders come from the book's
+// pool, resting orders live in the order store and trades are recycled by the TradeBuffer.
+class OrderBookAllocationTest {
+    private static final int WARMUP_ROUNDS = 200_000;
+    private static final int MEASURED_ROUNDS = 100_000;
+
+    @Test
+    void matchingAllocatesNothingOnceWarm() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        OrderBook book = new OrderBook(new Instrument("ALLOC", 0.01));
+        TradeBuffer trades = new TradeBuffer();
+        long[] matched = new long[1];
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(book, trades, matched);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            round(book, trades, matched);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals((long) (WARMUP_ROUNDS + MEASURED_ROUNDS) * 3, matched[0]);
+        assertEquals(0, allocated, "bytes allocated across " + MEASURED_ROUNDS * 3 + " matches");
+    }
+
+    // Three asks rest on three levels, then one bid sweeps them all
+    private static void round(OrderBook book, TradeBuffer trades, long[] matched) {
+        for (int level = 0; level < 3; level++) {
+            submit(book, trades, Order.Side.SELL, 10_000 + level, 10);
+        }
+        matched[0] += submit(book, trades, Order.Side.BUY, 10_002, 30);
+    }
+
+    private static int submit(OrderBook book, TradeBuffer trades, Order.Side side, long price, int quantity) {
+        Order order = book.acquireOrder();
+        order.init(Order.nextId(), "T", book.getSymbol(), side, Order.Type.LIMIT, price, quantity, 0);
+        int count = book.submit(order, trades);
+        trades.clear();
+        return count;
+    }
+}
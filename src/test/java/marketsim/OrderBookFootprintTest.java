@@ -0,0 +1,41 @@
+package marketsim;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// A resting order costs a 56-byte store record plus a 12-byte index entry at a load factor of at
+// most 0.5, both growing by doubling; the live sizes must match the documented formulas.
+class OrderBookFootprintTest {
+    private static final int ORDERS = 1_000_000;
+
+    @Test
+    void indexSettlesAtTwelveBytesPerEntryAtHalfLoad() {
+        assertEquals(25_165_824, LongIntHashMap.footprintBytes(ORDERS)); // 2^21 entries of 12 bytes
+
+        LongIntHashMap map = new LongIntHashMap(16);
+        for (int i = 0; i < ORDERS; i++) {
+            map.put(i, i);
+        }
+        assertEquals(LongIntHashMap.footprintBytes(ORDERS), map.footprintBytes());
+    }
+
+    @Test
+    void restingBookMatchesFootprintFormula() {
+        assertEquals(58_720_256, OrderStore.footprintBytes(1024, ORDERS)); // 2^20 records of 56 bytes
+        assertEquals(83_886_080, OrderBook.footprintBytes(ORDERS));
+
+        for (boolean offHeap : new boolean[] {false, true}) {
+            OrderBook book = new OrderBook(new Instrument("SIZE", 0.01), null, OrderBook.DEFAULT_SNAPSHOT_DEPTH,
+                    offHeap);
+            for (int i = 0; i < ORDERS; i++) {
+                Order order = book.acquireOrder();
+                order.init(Order.nextId(), "T" + i % 100, book.getSymbol(), Order.Side.BUY, 10_000 - i % 1000, 10, 0);
+                book.addOrder(order);
+            }
+            assertEquals(LongIntHashMap.footprintBytes(ORDERS), book.getIndexFootprintBytes());
+            assertEquals(OrderStore.footprintBytes(1024, ORDERS), book.getStoreFootprintBytes());
+            assertEquals(OrderBook.footprintBytes(ORDERS), book.getIndexFootprintBytes() + book.getStoreFootprintBytes());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package marketsim;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Drives an OrderGateway over loopback with GatewayClient, against a live engine
+@Timeout(30)
+class OrderGatewayTest {
+    private static final long AAPL = GatewayProtocol.packSymbol("AAPL");
+
+    private MatchingEngine engine;
+    private OrderGateway gateway;
+    private InetSocketAddress address;
+
+    @BeforeEach
+    void start() throws IOException {
+        engine = new MatchingEngine();
+        engine.registerSymbol("AAPL");
+        engine.setRiskManager(new RiskManager(new RiskLimits(1_000, Long.MAX_VALUE, Long.MAX_VALUE,
+                Long.MAX_VALUE, Integer.MAX_VALUE), 16, engine.getSymbolDirectory(), engine.getTraderDirectory()));
+        engine.start();
+        gateway = new OrderGateway(engine, new InetSocketAddress("127.0.0.1", 0));
+        gateway.start();
+        address = new InetSocketAddress("127.0.0.1", gateway.getPort());
+    }
+
+    @AfterEach
+    void stop() {
+        gateway.close();
+        engine.stop();
+    }
+
+    @Test
+    void restingOrderIsAckedAndFilled() throws IOException {
+        try (GatewayClient alice = new GatewayClient(address, "ALICE");
+             GatewayClient bob = new GatewayClient(address, "BOB")) {
+            Recorder aliceEvents = new Recorder();
+            alice.sendNew(7, AAPL, Order.Side.BUY, Order.Type.LIMIT, 10_000, 100);
+            alice.flush();
+            aliceEvents.await(alice, 1);
+            long restingId = aliceEvents.orderIdOf(7);
+
+            Recorder bobEvents = new Recorder();
+            bob.sendNew(1, AAPL, Order.Side.SELL, Order.Type.IOC, 10_000, 40);
+            bob.flush();
+            bobEvents.await(bob, 2);
+            long aggressorId = bobEvents.orderIdOf(1);
+            assertEquals(List.of("ack 1 " + aggressorId, "fill " + aggressorId + " 10000 40"), bobEvents.events);
+
+            aliceEvents.await(alice, 2);
+            assertEquals("fill " + restingId + " 10000 40", aliceEvents.events.get(1));
+            assertEquals(2, gateway.getOrdersAccepted());
+            assertEquals(2, gateway.getFillsSent());
+        }
+    }
+
+    @Test
+    void everyFillFollowsTheAckOfItsOrder() throws IOException {
+        int orders = 500;
+        try (GatewayClient maker = new GatewayClient(address, "MAKER");
+             GatewayClient taker = new GatewayClient(address, "TAKER")) {
+            Recorder makerEvents = new Recorder();
+            maker.sendNew(0, AAPL, Order.Side.SELL, Order.Type.LIMIT, 10_000, orders);
+            maker.flush();
+            makerEvents.await(maker, 1);
+
+            // Each aggressor fills at once, racing its own ack
+            Recorder takerEvents = new Recorder();
+            for (int i = 0; i < orders; i++) {
+                taker.sendNew(i, AAPL, Order.Side.BUY, Order.Type.IOC, 10_000, 1);
+            }
+            taker.flush();
+            takerEvents.await(taker, 2 * orders);
+
+            Set<Long> acked = new HashSet<>();
+            for (String event : takerEvents.events) {
+                String[] fields = event.split(" ");
+                if (fields[0].equals("ack")) {
+                    acked.add(Long.parseLong(fields[2]));
+                } else {
+                    assertTrue(acked.contains(Long.parseLong(fields[1])), "fill before its ack: " + event);
+                }
+            }
+            assertEquals(orders, acked.size());
+        }
+    }
+
+    @Test
+    void ordersBeforeLoginAreRejected() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            ByteBuffer buffer = ByteBuffer.allocate(GatewayProtocol.MAX_LENGTH);
+            GatewayProtocol.putNew(buffer, 3, AAPL, Order.Side.BUY, Order.Type.LIMIT, 10_000, 10);
+            buffer.flip();
+            channel.write(buffer);
+
+            buffer.clear().limit(GatewayProtocol.REJECT_LENGTH);
+            while (buffer.hasRemaining()) {
+                assertTrue(channel.read(buffer) >= 0, "gateway closed the connection");
+            }
+            assertEquals(GatewayProtocol.REJECT, buffer.get(0));
+            assertEquals(3, buffer.getLong(1));
+            assertEquals(GatewayProtocol.REJECT_NOT_LOGGED_IN, buffer.get(9));
+        }
+    }
+
+    @Test
+    void invalidAndRiskRejectedOrdersAreRefused() throws IOException {
+        try (GatewayClient alice = new GatewayClient(address, "ALICE")) {
+            Recorder events = new Recorder();
+            alice.sendNew(1, AAPL, Order.Side.BUY, Order.Type.LIMIT, 10_000, 0);
+            alice.sendNew(2, GatewayProtocol.packSymbol("JUNK"), Order.Side.BUY, Order.Type.LIMIT, 10_000, 10);
+            alice.sendNew(3, AAPL, Order.Side.BUY, Order.Type.LIMIT, 10_000, 5_000);
+            alice.flush();
+            events.await(alice, 3);
+
+            assertEquals(List.of(
+                    "reject 1 " + GatewayProtocol.REJECT_INVALID,
+                    "reject 2 " + GatewayProtocol.REJECT_INVALID,
+                    "reject 3 " + (GatewayProtocol.REJECT_RISK + RiskManager.REJECT_ORDER_SIZE)), events.events);
+            assertEquals(-1, engine.lookupSymbol("JUNK"), "an unknown symbol must not create a book");
+            assertEquals(3, gateway.getRejects());
+            assertEquals(0, gateway.getOrdersAccepted());
+        }
+    }
+
+    @Test
+    void cancelOfAnotherTradersOrderIsRefused() throws IOException {
+        try (GatewayClient alice = new GatewayClient(address, "ALICE");
+             GatewayClient bob = new GatewayClient(address, "BOB")) {
+            Recorder aliceEvents = new Recorder();
+            alice.sendNew(1, AAPL, Order.Side.BUY, Order.Type.LIMIT, 10_000, 100);
+            alice.flush();
+            aliceEvents.await(alice, 1);
+            long orderId = aliceEvents.orderIdOf(1);
+
+            Recorder bobEvents = new Recorder();
+            bob.sendCancel(AAPL, orderId);
+            bob.flush();
+            bobEvents.await(bob, 1);
+            assertEquals(List.of("cancel " + orderId + " false"), bobEvents.events);
+
+            alice.sendCancel(AAPL, orderId);
+            alice.flush();
+            aliceEvents.await(alice, 2);
+            assertEquals("cancel " + orderId + " true", aliceEvents.events.get(1));
+        }
+    }
+
+    // Keeps every message of one session, in arrival order
+    private static final class Recorder implements GatewayClient.Listener {
+        final List<String> events = new ArrayList<>();
+
+        void await(GatewayClient client, int count) throws IOException {
+            while (events.size() < count) {
+                assertTrue(client.poll(this) >= 0, "gateway closed the connection");
+            }
+        }
+
+        long orderIdOf(long clientOrderId) {
+            for (String event : events) {
+                String[] fields = event.split(" ");
+                if (fields[0].equals("ack") && Long.parseLong(fields[1]) == clientOrderId) {
+                    return Long.parseLong(fields[2]);
+                }
+            }
+            throw new AssertionError("No ack for client order " + clientOrderId + " in " + events);
+        }
+
+        @Override
+        public void onAck(long clientOrderId, long orderId) {
+            events.add("ack " + clientOrderId + " " + orderId);
+        }
+
+        @Override
+        public void onCancelAck(long orderId, boolean cancelled) {
+            events.add("cancel " + orderId + " " + cancelled);
+        }
+
+        @Override
+        public void onFill(long orderId, long tradeId, long price, int quantity) {
+            events.add("fill " + orderId + " " + price + " " + quantity);
+        }
+
+        @Override
+        public void onReject(long clientOrderId, int reason) {
+            events.add("reject " + clientOrderId + " " + reason);
+        }
+    }
+}